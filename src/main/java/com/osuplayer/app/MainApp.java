@@ -42,6 +42,7 @@ public class MainApp extends Application {
 
         primaryStage.setOnCloseRequest(event -> {
             ui.shutdown();
+            configManager.flush();
             if (discord != null) discord.stop();
             if (audioPlayer != null) audioPlayer.release();
             if (videoPlayer != null) videoPlayer.release();
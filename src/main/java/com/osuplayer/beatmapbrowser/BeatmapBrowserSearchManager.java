@@ -13,6 +13,7 @@ import com.osuplayer.lang.I18n;
 import com.osuplayer.mirrors.MirrorSearchResult;
 import com.osuplayer.mirrors.MirrorServer;
 import com.osuplayer.osu.OsuApiClient;
+import com.osuplayer.search.RelevanceScoring;
 
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
@@ -648,22 +649,7 @@ public class BeatmapBrowserSearchManager {
         if (tokens.isEmpty()) {
             return score;
         }
-
-        int matchedTokens = 0;
-        for (String token : tokens) {
-            int tokenScore = bestTokenScore(summary, token);
-            if (tokenScore > 0) {
-                matchedTokens++;
-                score += tokenScore;
-            }
-        }
-
-        if (matchedTokens == tokens.size()) {
-            score += 25; 
-        } else {
-            score -= (tokens.size() - matchedTokens) * 15;
-        }
-        return score;
+        return score + RelevanceScoring.tokenScore(tokens, token -> bestTokenScore(summary, token));
     }
 
     private int bestTokenScore(OsuApiClient.BeatmapsetSummary summary, String token) {
@@ -738,17 +724,7 @@ public class BeatmapBrowserSearchManager {
         if (value == null || value.isBlank()) {
             return 0;
         }
-        String haystack = value.toLowerCase(Locale.ROOT);
-        if (haystack.equals(needle)) {
-            return baseWeight + 25;
-        }
-        if (haystack.startsWith(needle)) {
-            return baseWeight + 15;
-        }
-        if (haystack.contains(needle)) {
-            return baseWeight;
-        }
-        return 0;
+        return RelevanceScoring.matchScore(value.toLowerCase(Locale.ROOT), needle, baseWeight);
     }
 
     private int popularityBonus(OsuApiClient.BeatmapsetSummary summary) {
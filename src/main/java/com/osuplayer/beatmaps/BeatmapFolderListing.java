@@ -0,0 +1,113 @@
+package com.osuplayer.beatmaps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public final class BeatmapFolderListing {
+
+    private final File folder;
+    private final List<String> names;
+    private final Set<String> exactNames;
+    private final Map<String, String> namesByLowerCase;
+    private final List<File> osuFiles;
+
+    private BeatmapFolderListing(File folder, List<String> names) {
+        this.folder = folder;
+        this.names = Collections.unmodifiableList(names);
+        this.exactNames = new HashSet<>(names);
+        this.namesByLowerCase = new HashMap<>(names.size() * 2);
+        List<File> osu = new ArrayList<>();
+        for (String name : names) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            namesByLowerCase.putIfAbsent(lower, name);
+            if (lower.endsWith(".osu")) {
+                osu.add(new File(folder, name));
+            }
+        }
+        this.osuFiles = Collections.unmodifiableList(osu);
+    }
+
+    public static BeatmapFolderListing read(File folder) {
+        if (folder == null) {
+            return new BeatmapFolderListing(null, new ArrayList<>());
+        }
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+            for (Path entry : stream) {
+                Path fileName = entry.getFileName();
+                if (fileName != null) {
+                    names.add(fileName.toString());
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException | InvalidPathException ex) {
+            names.clear();
+        } catch (IOException ex) {
+            System.err.println("Error listando carpeta " + folder.getAbsolutePath() + ": " + ex.getMessage());
+            names.clear();
+        }
+        return new BeatmapFolderListing(folder, names);
+    }
+
+    public File folder() {
+        return folder;
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    public List<File> osuFiles() {
+        return osuFiles;
+    }
+
+    public File resolve(String relativeName) {
+        if (folder == null || relativeName == null) {
+            return null;
+        }
+        String normalized = relativeName.replace('\\', '/').trim();
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        int separator = normalized.indexOf('/');
+        String head = separator < 0 ? normalized : normalized.substring(0, separator);
+        String actualHead = exactNames.contains(head) ? head : namesByLowerCase.get(head.toLowerCase(Locale.ROOT));
+        if (actualHead == null) {
+            return null;
+        }
+        if (separator < 0) {
+            return new File(folder, actualHead);
+        }
+        File nested = new File(new File(folder, actualHead), normalized.substring(separator + 1));
+        return nested.exists() ? nested : null;
+    }
+
+    public File findFirst(Predicate<String> nameFilter) {
+        if (folder == null) {
+            return null;
+        }
+        for (String name : names) {
+            if (nameFilter.test(name)) {
+                return new File(folder, name);
+            }
+        }
+        return null;
+    }
+}
@@ -3,6 +3,7 @@ package com.osuplayer.beatmaps;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.CodingErrorAction;
@@ -23,9 +24,15 @@ public class BeatmapParser {
             ".mp4", ".mkv", ".mov", ".avi", ".wmv", ".flv", ".webm", ".mpg", ".mpeg", ".m4v");
 
     public SongMetadata parseSongMetadata(File osuFile) {
-        if (osuFile == null || !osuFile.exists()) return null;
+        BeatmapFileInfo info = parseBeatmapFile(osuFile);
+        return info == null ? null : info.metadata();
+    }
+
+    public BeatmapFileInfo parseBeatmapFile(File osuFile) {
+        if (osuFile == null) return null;
 
         String currentSection = "";
+        boolean eventsVisited = false;
         String title = null;
         String titleUnicode = null;
         String artist = null;
@@ -37,6 +44,8 @@ public class BeatmapParser {
         String beatmapId = null;
         String beatmapSetId = null;
         String audioFilename = null;
+        VideoEvent videoEvent = null;
+        String backgroundFilename = null;
 
         try (BufferedReader reader = newBufferedReader(osuFile)) {
             String line;
@@ -45,7 +54,9 @@ public class BeatmapParser {
                 if (line.isEmpty() || line.startsWith("//")) continue;
 
                 if (isSectionHeader(line)) {
+                    if (eventsVisited) break;
                     currentSection = line;
+                    eventsVisited = "[Events]".equals(line);
                     continue;
                 }
 
@@ -77,12 +88,28 @@ public class BeatmapParser {
                     } else if (line.regionMatches(true, 0, "BeatmapSetID:", 0, 13)) {
                         beatmapSetId = valueAfterColon(line);
                     }
+                } else if (eventsVisited) {
+                    if (backgroundFilename == null && line.startsWith("0,")) {
+                        String[] parts = line.split(",");
+                        if (parts.length >= 3) backgroundFilename = parts[2].replace("\"", "").trim();
+                    } else if (videoEvent == null && line.regionMatches(true, 0, "Video", 0, 5)) {
+                        videoEvent = new VideoEvent(extractVideoFilename(line), extractVideoOffset(line));
+                    }
                 }
             }
+        } catch (FileNotFoundException e) {
+            return null;
         } catch (IOException e) {
             System.err.println("Error leyendo archivo " + osuFile.getAbsolutePath() + ": " + e.getMessage());
         }
 
+        return new BeatmapFileInfo(buildSongMetadata(title, titleUnicode, artist, artistUnicode, audioFilename,
+                creator, version, source, tags, beatmapId, beatmapSetId), videoEvent, backgroundFilename);
+    }
+
+    private SongMetadata buildSongMetadata(String title, String titleUnicode, String artist, String artistUnicode,
+                                           String audioFilename, String creator, String version, String source,
+                                           List<String> tags, String beatmapId, String beatmapSetId) {
         if (title == null) title = titleUnicode;
         if (artist == null) artist = artistUnicode;
 
@@ -97,96 +124,41 @@ public class BeatmapParser {
     }
 
     public List<File> listOsuFiles(File beatmapFolder) {
-        if (beatmapFolder == null || !beatmapFolder.exists() || !beatmapFolder.isDirectory()) {
-            return Collections.emptyList();
-        }
-        File[] osuFiles = beatmapFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".osu"));
-        if (osuFiles == null || osuFiles.length == 0) return Collections.emptyList();
-        return Arrays.asList(osuFiles);
+        return BeatmapFolderListing.read(beatmapFolder).osuFiles();
     }
 
     public String findCoverImagePath(File beatmapFolder) {
-        for (File osuFile : listOsuFiles(beatmapFolder)) {
-            String bg = parseBackground(osuFile);
-            if (bg == null) continue;
-            File imageFile = new File(beatmapFolder, bg);
-            if (imageFile.exists()) return imageFile.getAbsolutePath();
+        BeatmapFolderListing listing = BeatmapFolderListing.read(beatmapFolder);
+        for (File osuFile : listing.osuFiles()) {
+            File imageFile = listing.resolve(parseBackground(osuFile));
+            if (imageFile != null) return imageFile.getAbsolutePath();
         }
         return null;
     }
 
     public String findVideoPath(File beatmapFolder) {
-        if (beatmapFolder == null || !beatmapFolder.isDirectory()) return null;
+        BeatmapFolderListing listing = BeatmapFolderListing.read(beatmapFolder);
+        if (listing.isEmpty()) return null;
 
-        for (File osuFile : listOsuFiles(beatmapFolder)) {
+        for (File osuFile : listing.osuFiles()) {
             VideoEvent event = parseVideoEvent(osuFile);
-            if (event == null || event.filename == null) continue;
-            File videoFile = new File(beatmapFolder, event.filename);
-            if (videoFile.exists()) return videoFile.getAbsolutePath();
+            if (event == null) continue;
+            File videoFile = listing.resolve(event.filename);
+            if (videoFile != null) return videoFile.getAbsolutePath();
         }
 
-        File[] fallbackVideos = beatmapFolder.listFiles((dir, name) -> isLikelyVideo(name));
-        if (fallbackVideos != null && fallbackVideos.length > 0) {
-            return fallbackVideos[0].getAbsolutePath();
-        }
-        return null;
+        File fallbackVideo = listing.findFirst(this::isLikelyVideo);
+        return fallbackVideo == null ? null : fallbackVideo.getAbsolutePath();
     }
 
     public String parseBackground(File osuFile) {
-        if (osuFile == null || !osuFile.exists()) return null;
-
-        try (BufferedReader reader = newBufferedReader(osuFile)) {
-            String line;
-            boolean inEventsSection = false;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.equals("[Events]")) {
-                    inEventsSection = true;
-                    continue;
-                }
-                if (inEventsSection) {
-                    if (line.startsWith("0,")) {
-                        String[] parts = line.split(",");
-                        if (parts.length >= 3) return parts[2].replace("\"", "").trim();
-                    }
-                    if (isSectionHeader(line)) break;
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error leyendo archivo " + osuFile.getAbsolutePath() + ": " + e.getMessage());
-        }
-        return null;
+        BeatmapFileInfo info = parseBeatmapFile(osuFile);
+        return info == null ? null : info.backgroundFilename();
     }
 
     public VideoEvent parseVideoEvent(File osuFile) {
-        if (osuFile == null || !osuFile.exists()) return null;
-
-        try (BufferedReader reader = newBufferedReader(osuFile)) {
-            String line;
-            boolean inEventsSection = false;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("//")) continue;
-
-                if (line.equals("[Events]")) {
-                    inEventsSection = true;
-                    continue;
-                }
-
-                if (inEventsSection) {
-                    if (isSectionHeader(line)) break;
-
-                    if (line.regionMatches(true, 0, "Video", 0, 5)) {
-                        String filename = extractVideoFilename(line);
-                        long offset = extractVideoOffset(line);
-                        return new VideoEvent(filename, offset);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error leyendo archivo " + osuFile.getAbsolutePath() + ": " + e.getMessage());
-        }
-        return null;
+        BeatmapFileInfo info = parseBeatmapFile(osuFile);
+        return info == null ? null : info.videoEvent();
     }
 
     public String parseVideo(File osuFile) {
@@ -239,6 +211,12 @@ public class BeatmapParser {
         }
     }
 
+    public record BeatmapFileInfo(SongMetadata metadata, VideoEvent videoEvent, String backgroundFilename) {
+        public String audioFilename() {
+            return metadata == null ? null : metadata.audioFilename;
+        }
+    }
+
     private boolean isSectionHeader(String line) {
         return line.startsWith("[") && line.endsWith("]");
     }
@@ -0,0 +1,79 @@
+package com.osuplayer.beatmaps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public final class CollectionDatabase {
+
+    public static final String FILE_NAME = "collection.db";
+
+    private final int version;
+    private final List<Collection> collections;
+
+    private CollectionDatabase(int version, List<Collection> collections) {
+        this.version = version;
+        this.collections = Collections.unmodifiableList(collections);
+    }
+
+    public static File locate(File songsFolder) {
+        File parent = songsFolder == null ? null : songsFolder.getAbsoluteFile().getParentFile();
+        if (parent == null) {
+            return null;
+        }
+        File database = new File(parent, FILE_NAME);
+        return database.isFile() ? database : null;
+    }
+
+    public static CollectionDatabase read(Path file) throws IOException {
+        try (OsuBinaryReader reader = OsuBinaryReader.open(file, FILE_NAME)) {
+            int version = reader.readInt();
+            int count = reader.readInt();
+            if (count < 0) {
+                throw new IOException("Número de colecciones inválido en " + FILE_NAME + ": " + count);
+            }
+            List<Collection> collections = new ArrayList<>(Math.min(count, 1 << 12));
+            for (int i = 0; i < count; i++) {
+                String name = reader.readString();
+                int size = reader.readInt();
+                if (size < 0) {
+                    throw new IOException("Número de beatmaps inválido en " + FILE_NAME + ": " + size);
+                }
+                List<String> hashes = new ArrayList<>(Math.min(size, 1 << 16));
+                for (int j = 0; j < size; j++) {
+                    String hash = reader.readString();
+                    if (hash != null && !hash.isBlank()) {
+                        hashes.add(hash.trim().toLowerCase(Locale.ROOT));
+                    }
+                }
+                collections.add(new Collection(name == null ? "" : name, Collections.unmodifiableList(hashes)));
+            }
+            return new CollectionDatabase(version, collections);
+        }
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public List<Collection> collections() {
+        return collections;
+    }
+
+    public Set<String> beatmapHashes() {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (Collection collection : collections) {
+            hashes.addAll(collection.beatmapHashes());
+        }
+        return hashes;
+    }
+
+    public record Collection(String name, List<String> beatmapHashes) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.osuplayer.beatmaps;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class OsuBinaryReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte STRING_ABSENT = 0x00;
+    private static final byte STRING_PRESENT = 0x0b;
+
+    private final FileChannel channel;
+    private final String sourceName;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private OsuBinaryReader(FileChannel channel, String sourceName) {
+        this.channel = channel;
+        this.sourceName = sourceName;
+        buffer.limit(0);
+    }
+
+    static OsuBinaryReader open(Path file, String sourceName) throws IOException {
+        return new OsuBinaryReader(FileChannel.open(file, StandardOpenOption.READ), sourceName);
+    }
+
+    byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    void skip(long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            if (!buffer.hasRemaining()) {
+                require(1);
+            }
+            int step = (int) Math.min(remaining, buffer.remaining());
+            buffer.position(buffer.position() + step);
+            remaining -= step;
+        }
+    }
+
+    String readString() throws IOException {
+        int length = readStringLength();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                require(1);
+            }
+            int step = Math.min(length - offset, buffer.remaining());
+            buffer.get(bytes, offset, step);
+            offset += step;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void skipString() throws IOException {
+        int length = readStringLength();
+        if (length > 0) {
+            skip(length);
+        }
+    }
+
+    private int readStringLength() throws IOException {
+        byte marker = readByte();
+        if (marker == STRING_ABSENT) {
+            return -1;
+        }
+        if (marker != STRING_PRESENT) {
+            throw new IOException("Cadena inválida en " + sourceName + " (marcador " + marker + ")");
+        }
+        int length = 0;
+        int shift = 0;
+        byte next;
+        do {
+            if (shift > 28) {
+                throw new IOException("Longitud de cadena inválida en " + sourceName);
+            }
+            next = readByte();
+            length |= (next & 0x7f) << shift;
+            shift += 7;
+        } while ((next & 0x80) != 0);
+        if (length < 0) {
+            throw new IOException("Longitud de cadena inválida en " + sourceName);
+        }
+        return length;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                throw new EOFException("Fin inesperado de " + sourceName);
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
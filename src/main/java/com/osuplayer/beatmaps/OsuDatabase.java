@@ -0,0 +1,186 @@
+package com.osuplayer.beatmaps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public final class OsuDatabase {
+
+    public static final String FILE_NAME = "osu!.db";
+
+    private static final int ENTRY_SIZE_REMOVED_VERSION = 20191106;
+    private static final int FLOAT_DIFFICULTY_VERSION = 20140609;
+    private static final byte INT_MARKER = 0x08;
+    private static final byte FLOAT_MARKER = 0x0c;
+    private static final byte DOUBLE_MARKER = 0x0d;
+    private static final int TIMING_POINT_BYTES = 17;
+
+    private final int version;
+    private final List<Beatmap> beatmaps;
+
+    private OsuDatabase(int version, List<Beatmap> beatmaps) {
+        this.version = version;
+        this.beatmaps = Collections.unmodifiableList(beatmaps);
+    }
+
+    public static File locate(File songsFolder) {
+        File parent = songsFolder == null ? null : songsFolder.getAbsoluteFile().getParentFile();
+        if (parent == null) {
+            return null;
+        }
+        File database = new File(parent, FILE_NAME);
+        return database.isFile() ? database : null;
+    }
+
+    public static OsuDatabase read(Path file) throws IOException {
+        try (OsuBinaryReader reader = OsuBinaryReader.open(file, FILE_NAME)) {
+            int version = reader.readInt();
+            reader.skip(4);
+            reader.skip(1);
+            reader.skip(8);
+            reader.skipString();
+            int count = reader.readInt();
+            if (count < 0) {
+                throw new IOException("Número de beatmaps inválido en " + FILE_NAME + ": " + count);
+            }
+            List<Beatmap> beatmaps = new ArrayList<>(Math.min(count, 1 << 20));
+            for (int i = 0; i < count; i++) {
+                beatmaps.add(readBeatmap(reader, version));
+            }
+            return new OsuDatabase(version, beatmaps);
+        }
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public List<Beatmap> beatmaps() {
+        return beatmaps;
+    }
+
+    public Map<String, List<Beatmap>> beatmapsByFolder() {
+        Map<String, List<Beatmap>> grouped = new HashMap<>();
+        for (Beatmap beatmap : beatmaps) {
+            if (beatmap.folderName() == null || beatmap.osuFileName() == null) {
+                continue;
+            }
+            grouped.computeIfAbsent(beatmap.folderName().toLowerCase(Locale.ROOT), key -> new ArrayList<>()).add(beatmap);
+        }
+        return grouped;
+    }
+
+    private static Beatmap readBeatmap(OsuBinaryReader reader, int version) throws IOException {
+        if (version < ENTRY_SIZE_REMOVED_VERSION) {
+            reader.skip(4);
+        }
+        String artist = reader.readString();
+        String artistUnicode = reader.readString();
+        String title = reader.readString();
+        String titleUnicode = reader.readString();
+        String creator = reader.readString();
+        String difficulty = reader.readString();
+        String audioFilename = reader.readString();
+        String md5 = reader.readString();
+        String osuFileName = reader.readString();
+        reader.skip(1 + 2 + 2 + 2 + 8);
+        boolean floatDifficulty = version >= FLOAT_DIFFICULTY_VERSION;
+        reader.skip(floatDifficulty ? 16 : 4);
+        reader.skip(8);
+        if (floatDifficulty) {
+            for (int mode = 0; mode < 4; mode++) {
+                skipStarRatings(reader);
+            }
+        }
+        reader.skip(4 + 4 + 4);
+        int timingPoints = reader.readInt();
+        if (timingPoints < 0) {
+            throw new IOException("Número de timing points inválido en " + FILE_NAME + ": " + timingPoints);
+        }
+        reader.skip((long) timingPoints * TIMING_POINT_BYTES);
+        int beatmapId = reader.readInt();
+        int beatmapSetId = reader.readInt();
+        reader.skip(4 + 4 + 2 + 4 + 1);
+        String source = reader.readString();
+        String tags = reader.readString();
+        reader.skip(2);
+        reader.skipString();
+        reader.skip(1 + 8 + 1);
+        String folderName = reader.readString();
+        reader.skip(8 + 5);
+        if (!floatDifficulty) {
+            reader.skip(2);
+        }
+        reader.skip(4 + 1);
+        return new Beatmap(artist, artistUnicode, title, titleUnicode, creator, difficulty, audioFilename, md5,
+            osuFileName, beatmapId, beatmapSetId, source, tags, folderName);
+    }
+
+    private static void skipStarRatings(OsuBinaryReader reader) throws IOException {
+        int pairs = reader.readInt();
+        if (pairs < 0) {
+            throw new IOException("Número de dificultades inválido en " + FILE_NAME + ": " + pairs);
+        }
+        for (int i = 0; i < pairs; i++) {
+            expectMarker(reader.readByte(), INT_MARKER);
+            reader.skip(4);
+            byte valueMarker = reader.readByte();
+            if (valueMarker == DOUBLE_MARKER) {
+                reader.skip(8);
+            } else if (valueMarker == FLOAT_MARKER) {
+                reader.skip(4);
+            } else {
+                throw new IOException("Formato de " + FILE_NAME + " no reconocido (marcador " + valueMarker + ")");
+            }
+        }
+    }
+
+    private static void expectMarker(byte actual, byte expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Formato de " + FILE_NAME + " no reconocido (marcador " + actual + ")");
+        }
+    }
+
+    public record Beatmap(
+        String artist,
+        String artistUnicode,
+        String title,
+        String titleUnicode,
+        String creator,
+        String difficulty,
+        String audioFilename,
+        String md5,
+        String osuFileName,
+        int beatmapId,
+        int beatmapSetId,
+        String source,
+        String tags,
+        String folderName
+    ) {
+        public BeatmapParser.SongMetadata toMetadata() {
+            String resolvedTitle = isBlank(title) ? titleUnicode : title;
+            String resolvedArtist = isBlank(artist) ? artistUnicode : artist;
+            if (resolvedTitle == null || resolvedArtist == null || isBlank(audioFilename)) {
+                return null;
+            }
+            List<String> tagList = new ArrayList<>();
+            if (tags != null && !tags.isBlank()) {
+                Collections.addAll(tagList, tags.trim().split("\\s+"));
+            }
+            return new BeatmapParser.SongMetadata(resolvedTitle, titleUnicode, resolvedArtist, artistUnicode,
+                audioFilename.trim(), creator, difficulty, source,
+                tagList.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(tagList),
+                Integer.toString(beatmapId), Integer.toString(beatmapSetId));
+        }
+
+        private static boolean isBlank(String value) {
+            return value == null || value.isBlank();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.osuplayer.beatmaps;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class SongsFolderWatcher {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 1500;
+    private static final long MTIME_POLL_MILLIS = 10_000;
+
+    private final Consumer<FolderChanges> listener;
+    private final long debounceMillis;
+    private WatchService watchService;
+    private Thread worker;
+    private Path watchedFolder;
+    private volatile Runnable partialWatchCallback;
+
+    public SongsFolderWatcher(Consumer<FolderChanges> listener) {
+        this(listener, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public SongsFolderWatcher(Consumer<FolderChanges> listener, long debounceMillis) {
+        this.listener = listener;
+        this.debounceMillis = Math.max(100, debounceMillis);
+    }
+
+    public void setOnPartialWatch(Runnable callback) {
+        this.partialWatchCallback = callback;
+    }
+
+    public synchronized void start(Path songsFolder) {
+        if (songsFolder == null || !Files.isDirectory(songsFolder)) {
+            stop();
+            return;
+        }
+        Path normalized = songsFolder.toAbsolutePath().normalize();
+        if (normalized.equals(watchedFolder) && worker != null && worker.isAlive()) {
+            return;
+        }
+        stop();
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            normalized.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+            watchedFolder = normalized;
+        } catch (IOException e) {
+            System.err.println("No se pudo vigilar la carpeta " + normalized + ": " + e.getMessage());
+            return;
+        }
+        WatchService service = watchService;
+        Path root = watchedFolder;
+        worker = new Thread(() -> watchLoop(service, root), "osu-library-watcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+        watchService = null;
+        worker = null;
+        watchedFolder = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return worker != null && worker.isAlive();
+    }
+
+    private void watchLoop(WatchService service, Path root) {
+        Set<Path> pending = new LinkedHashSet<>();
+        // Folders the OS would not give a watch key (usually the inotify watch limit); their mtimes are polled instead.
+        Map<Path, Long> polledFolders = new HashMap<>();
+        boolean overflow = false;
+        try {
+            registerExistingFolders(service, root, polledFolders);
+            boolean partialReported = reportPartialWatch(root, polledFolders, false);
+            long nextPoll = System.currentTimeMillis() + MTIME_POLL_MILLIS;
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+                if (!pending.isEmpty() || overflow) {
+                    key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                } else if (!polledFolders.isEmpty()) {
+                    key = service.poll(Math.max(1, nextPoll - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } else {
+                    key = service.take();
+                }
+                if (!polledFolders.isEmpty() && System.currentTimeMillis() >= nextPoll) {
+                    pollModifiedFolders(polledFolders, pending);
+                    nextPoll = System.currentTimeMillis() + MTIME_POLL_MILLIS;
+                }
+                if (key == null) {
+                    if (!pending.isEmpty() || overflow) {
+                        dispatch(root, pending, overflow);
+                        pending.clear();
+                        overflow = false;
+                    }
+                    continue;
+                }
+                Path watched = (Path) key.watchable();
+                boolean rootKey = watched.equals(root);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    if (!rootKey) {
+                        pending.add(watched);
+                        continue;
+                    }
+                    Object context = event.context();
+                    if (context instanceof Path relative) {
+                        Path child = root.resolve(relative).normalize();
+                        pending.add(child);
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            registerNewFolder(service, child, polledFolders);
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            polledFolders.remove(child);
+                        }
+                    }
+                }
+                partialReported = reportPartialWatch(root, polledFolders, partialReported);
+                if (!key.reset() && rootKey) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void registerExistingFolders(WatchService service, Path root, Map<Path, Long> polledFolders) {
+        // Edits inside a beatmap folder only bump the folder itself, so each one needs its own key.
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path child : children) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                registerNewFolder(service, child.normalize(), polledFolders);
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.err.println("No se pudieron listar las carpetas de " + root + ": " + e.getMessage());
+        }
+    }
+
+    private void registerNewFolder(WatchService service, Path folder, Map<Path, Long> polledFolders) {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try {
+            folder.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            polledFolders.put(folder, lastModified(folder));
+        }
+    }
+
+    private void pollModifiedFolders(Map<Path, Long> polledFolders, Set<Path> pending) {
+        Iterator<Map.Entry<Path, Long>> iterator = polledFolders.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            long modified = lastModified(entry.getKey());
+            if (modified == entry.getValue()) {
+                continue;
+            }
+            pending.add(entry.getKey());
+            if (modified < 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(modified);
+            }
+        }
+    }
+
+    private boolean reportPartialWatch(Path root, Map<Path, Long> polledFolders, boolean alreadyReported) {
+        if (alreadyReported || polledFolders.isEmpty()) {
+            return alreadyReported;
+        }
+        System.err.println("No se pudieron vigilar " + polledFolders.size() + " carpetas de " + root
+            + "; se revisarán cada " + (MTIME_POLL_MILLIS / 1000) + " s.");
+        Runnable callback = partialWatchCallback;
+        if (callback != null) {
+            callback.run();
+        }
+        return true;
+    }
+
+    private static long lastModified(Path folder) {
+        try {
+            return Files.getLastModifiedTime(folder).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void dispatch(Path root, Set<Path> pending, boolean overflow) {
+        if (listener == null) {
+            return;
+        }
+        if (overflow) {
+            listener.accept(new FolderChanges(root, List.of(), List.of(), true));
+            return;
+        }
+        List<Path> updated = new ArrayList<>();
+        List<Path> removed = new ArrayList<>();
+        for (Path path : pending) {
+            if (Files.isDirectory(path)) {
+                updated.add(path);
+            } else if (!Files.exists(path)) {
+                removed.add(path);
+            }
+        }
+        if (updated.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        listener.accept(new FolderChanges(root, updated, removed, false));
+    }
+
+    public record FolderChanges(Path songsFolder, List<Path> updatedFolders, List<Path> removedFolders, boolean requiresFullReload) {
+        public FolderChanges {
+            updatedFolders = List.copyOf(updatedFolders);
+            removedFolders = List.copyOf(removedFolders);
+        }
+    }
+}
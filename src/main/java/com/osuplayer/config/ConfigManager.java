@@ -2,12 +2,12 @@ package com.osuplayer.config;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,13 +19,16 @@ public class ConfigManager {
     private static final Path CONFIG_DIR = Paths.get("config");
     private final Path configFilePath = CONFIG_DIR.resolve(CONFIG_FILE);
     private final Properties props = new Properties();
+    private final WriteBehindPropertiesFile configWriter;
     private final SongDataStore songStore;
 
     public ConfigManager() {
         ensureConfigDirectory();
         migrateLegacyFile(Paths.get(CONFIG_FILE), configFilePath);
         loadProperties();
-        songStore = new SongDataStore(CONFIG_DIR);
+        long writeDelay = readWriteDelayMillis();
+        configWriter = new WriteBehindPropertiesFile(props, configFilePath, "Configuración de OSU! Music Player", writeDelay);
+        songStore = new SongDataStore(CONFIG_DIR, writeDelay);
         migrateLegacySongData();
     }
 
@@ -42,12 +45,12 @@ public class ConfigManager {
     }
 
     private void saveProperties() {
-        ensureConfigDirectory();
-        try (OutputStream output = Files.newOutputStream(configFilePath)) {
-            props.store(output, "Configuración de OSU! Music Player");
-        } catch (IOException e) {
-            System.out.println("No se pudo guardar config.properties.");
-        }
+        configWriter.markDirty();
+    }
+
+    public void flush() {
+        configWriter.flush();
+        songStore.flush();
     }
 
     private void ensureConfigDirectory() {
@@ -107,6 +110,14 @@ public class ConfigManager {
         songStore.setFavorites(favorites);
     }
 
+    public void addFavorite(String song) {
+        songStore.addFavorite(song);
+    }
+
+    public void removeFavorite(String song) {
+        songStore.removeFavorite(song);
+    }
+
     public Map<String, List<String>> getPlaylists() {
         return songStore.getPlaylists();
     }
@@ -115,6 +126,42 @@ public class ConfigManager {
         songStore.setPlaylists(playlists);
     }
 
+    public void setPlaylistSongs(String playlist, List<String> songs) {
+        songStore.setPlaylistSongs(playlist, songs);
+    }
+
+    public void addPlaylistSong(String playlist, String song) {
+        songStore.addPlaylistSong(playlist, song);
+    }
+
+    public void addPlaylistSongs(String playlist, Collection<String> songs) {
+        songStore.addPlaylistSongs(playlist, songs);
+    }
+
+    public void removePlaylistSong(String playlist, String song) {
+        songStore.removePlaylistSong(playlist, song);
+    }
+
+    public void removePlaylistSongs(String playlist, Collection<String> songs) {
+        songStore.removePlaylistSongs(playlist, songs);
+    }
+
+    public void removePlaylistSongAt(String playlist, int index) {
+        songStore.removePlaylistSongAt(playlist, index);
+    }
+
+    public void movePlaylistSong(String playlist, int from, int to) {
+        songStore.movePlaylistSong(playlist, from, to);
+    }
+
+    public void clearPlaylist(String playlist) {
+        songStore.clearPlaylist(playlist);
+    }
+
+    public void deletePlaylist(String playlist) {
+        songStore.deletePlaylist(playlist);
+    }
+
     public String getCurrentSong() {
         return songStore.getCurrentSong();
     }
@@ -151,6 +198,22 @@ public class ConfigManager {
         return songStore.getPlayHistory();
     }
 
+    public void setPlayCounts(Map<String, Integer> playCounts) {
+        songStore.setPlayCounts(playCounts);
+    }
+
+    public Map<String, Integer> getPlayCounts() {
+        return songStore.getPlayCounts();
+    }
+
+    public void setRecentBeatmapSets(List<String> setIds) {
+        songStore.setRecentBeatmapSets(setIds);
+    }
+
+    public List<String> getRecentBeatmapSets() {
+        return songStore.getRecentBeatmapSets();
+    }
+
     public void setHistoryIndex(int index) {
         songStore.setHistoryIndex(index);
     }
@@ -172,6 +235,86 @@ public class ConfigManager {
         saveProperties();
     }
 
+    public int getLibraryScanParallelism() {
+        return parseInt(props.getProperty("library.scan.parallelism", "0"), 0);
+    }
+
+    public void setLibraryScanParallelism(int parallelism) {
+        props.setProperty("library.scan.parallelism", Integer.toString(Math.max(0, parallelism)));
+        saveProperties();
+    }
+
+    public boolean isLibraryWatchEnabled() {
+        return Boolean.parseBoolean(props.getProperty("library.watch.enabled", "false"));
+    }
+
+    public void setLibraryWatchEnabled(boolean enabled) {
+        props.setProperty("library.watch.enabled", Boolean.toString(enabled));
+        saveProperties();
+    }
+
+    public boolean isProgressiveLoadingEnabled() {
+        return Boolean.parseBoolean(props.getProperty("library.progressive.enabled", "true"));
+    }
+
+    public void setProgressiveLoadingEnabled(boolean enabled) {
+        props.setProperty("library.progressive.enabled", Boolean.toString(enabled));
+        saveProperties();
+    }
+
+    public boolean isBackgroundRevalidationEnabled() {
+        return Boolean.parseBoolean(props.getProperty("library.revalidate.background", "true"));
+    }
+
+    public void setBackgroundRevalidationEnabled(boolean enabled) {
+        props.setProperty("library.revalidate.background", Boolean.toString(enabled));
+        saveProperties();
+    }
+
+    public boolean isOsuDatabaseImportEnabled() {
+        return Boolean.parseBoolean(props.getProperty("library.osudb.enabled", "true"));
+    }
+
+    public void setOsuDatabaseImportEnabled(boolean enabled) {
+        props.setProperty("library.osudb.enabled", Boolean.toString(enabled));
+        saveProperties();
+    }
+
+    public boolean isFuzzySearchEnabled() {
+        return Boolean.parseBoolean(props.getProperty("search.fuzzy.enabled", "false"));
+    }
+
+    public void setFuzzySearchEnabled(boolean enabled) {
+        props.setProperty("search.fuzzy.enabled", Boolean.toString(enabled));
+        saveProperties();
+    }
+
+    public boolean isRankedSearchEnabled() {
+        return Boolean.parseBoolean(props.getProperty("search.ranked.enabled", "false"));
+    }
+
+    public void setRankedSearchEnabled(boolean enabled) {
+        props.setProperty("search.ranked.enabled", Boolean.toString(enabled));
+        saveProperties();
+    }
+
+    public long getWriteDelayMillis() {
+        return readWriteDelayMillis();
+    }
+
+    private long readWriteDelayMillis() {
+        return parseLong(props.getProperty("config.writeDelayMillis",
+            Long.toString(WriteBehindPropertiesFile.DEFAULT_DELAY_MILLIS)), WriteBehindPropertiesFile.DEFAULT_DELAY_MILLIS);
+    }
+
+    public void setWriteDelayMillis(long delayMillis) {
+        long clamped = Math.max(0, delayMillis);
+        props.setProperty("config.writeDelayMillis", Long.toString(clamped));
+        configWriter.setDelayMillis(clamped);
+        songStore.setWriteDelayMillis(clamped);
+        saveProperties();
+    }
+
     public double getWindowWidth() {
         return parseDouble(props.getProperty("window.width", "1200"), 1200);
     }
@@ -348,6 +491,14 @@ public class ConfigManager {
         }
     }
 
+    private int parseInt(String val, int def) {
+        try {
+            return Integer.parseInt(val);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
     private long parseLong(String val, long def) {
         try {
             return Long.parseLong(val);
@@ -2,14 +2,14 @@ package com.osuplayer.config;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,19 +22,34 @@ final class SongDataStore {
     private static final String SONGS_FILE = "songs.properties";
     private static final String COMMENT = "Datos de canciones de Osulux";
     private static final String PLAYLIST_PREFIX = "playlist.";
-    private static final String CACHE_KEY = "library.cache";
+    private static final String LEGACY_CACHE_KEY = "library.cache";
+    private static final String LIBRARY_CACHE_FILE = "library.cache";
+    private static final String SONG_LISTS_SNAPSHOT_FILE = "songlists.snapshot";
+    private static final String SONG_LISTS_JOURNAL_FILE = "songlists.journal";
+    private static final String FAVORITES_KEY = "favorites";
+    private static final String HISTORY_KEY = "playHistory";
+    private static final String PLAY_COUNTS_KEY = "playCounts";
+    private static final String RECENT_SETS_KEY = "recentSets";
     private static final Gson GSON = new Gson();
 
     private final Properties props = new Properties();
+    private final WriteBehindPropertiesFile songsWriter;
     private final Path songsFile;
+    private final Path libraryCacheFile;
     private final Path configDir;
+    private final SongListJournal songLists;
 
-    SongDataStore(Path configDir) {
+    SongDataStore(Path configDir, long writeDelayMillis) {
         this.configDir = configDir;
         this.songsFile = configDir.resolve(SONGS_FILE);
+        this.libraryCacheFile = configDir.resolve(LIBRARY_CACHE_FILE);
+        this.songsWriter = new WriteBehindPropertiesFile(props, songsFile, COMMENT, writeDelayMillis);
         ensureConfigDirectory();
         migrateLegacyFile();
         load();
+        this.songLists = new SongListJournal(configDir.resolve(SONG_LISTS_SNAPSHOT_FILE),
+            configDir.resolve(SONG_LISTS_JOURNAL_FILE));
+        migratePropertyLists();
     }
 
     private void load() {
@@ -48,12 +63,16 @@ final class SongDataStore {
     }
 
     private void save() {
-        ensureConfigDirectory();
-        try (OutputStream output = Files.newOutputStream(songsFile)) {
-            props.store(output, COMMENT);
-        } catch (IOException e) {
-            System.out.println("No se pudo guardar songs.properties.");
-        }
+        songsWriter.markDirty();
+    }
+
+    void flush() {
+        songsWriter.flush();
+        songLists.flush();
+    }
+
+    void setWriteDelayMillis(long delayMillis) {
+        songsWriter.setDelayMillis(delayMillis);
     }
 
     private void ensureConfigDirectory() {
@@ -75,48 +94,108 @@ final class SongDataStore {
         }
     }
 
+    private void migratePropertyLists() {
+        if (songLists.existedOnDisk()) {
+            return;
+        }
+        boolean migrated = false;
+        if (props.containsKey(FAVORITES_KEY)) {
+            songLists.replace(FAVORITES_KEY, parseList(props.getProperty(FAVORITES_KEY), ","));
+            props.remove(FAVORITES_KEY);
+            migrated = true;
+        }
+        if (props.containsKey(HISTORY_KEY)) {
+            songLists.replace(HISTORY_KEY, parseList(props.getProperty(HISTORY_KEY), ";"));
+            props.remove(HISTORY_KEY);
+            migrated = true;
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(PLAYLIST_PREFIX)) {
+                songLists.replace(key, parseList(props.getProperty(key), ","));
+                props.remove(key);
+                migrated = true;
+            }
+        }
+        if (migrated) {
+            songLists.compact();
+            save();
+        }
+    }
+
     boolean hasKey(String key) {
-        return props.containsKey(key);
+        return props.containsKey(key) || songLists.contains(key);
     }
 
     boolean hasAnyPlaylists() {
-        Set<String> names = props.stringPropertyNames();
-        for (String name : names) {
-            if (name.startsWith(PLAYLIST_PREFIX)) {
-                return true;
-            }
-        }
-        return false;
+        return !songLists.namesWithPrefix(PLAYLIST_PREFIX).isEmpty();
     }
 
     List<String> getFavorites() {
-        return parseList(props.getProperty("favorites", ""), ",");
+        return songLists.get(FAVORITES_KEY);
     }
 
     void setFavorites(List<String> favorites) {
-        props.setProperty("favorites", joinList(favorites, ","));
-        save();
+        songLists.update(FAVORITES_KEY, favorites);
+    }
+
+    void addFavorite(String song) {
+        songLists.add(FAVORITES_KEY, song);
+    }
+
+    void removeFavorite(String song) {
+        songLists.remove(FAVORITES_KEY, song);
     }
 
     Map<String, List<String>> getPlaylists() {
-        Map<String, List<String>> playlists = new HashMap<>();
-        for (String key : props.stringPropertyNames()) {
-            if (key.startsWith(PLAYLIST_PREFIX)) {
-                String name = key.substring(PLAYLIST_PREFIX.length());
-                playlists.put(name, parseList(props.getProperty(key, ""), ","));
-            }
-        }
-        return playlists;
+        return new HashMap<>(songLists.getWithPrefix(PLAYLIST_PREFIX));
     }
 
     void setPlaylists(Map<String, List<String>> playlists) {
-        props.keySet().removeIf(key -> key.toString().startsWith(PLAYLIST_PREFIX));
-        if (playlists != null) {
-            for (Map.Entry<String, List<String>> entry : playlists.entrySet()) {
-                props.setProperty(PLAYLIST_PREFIX + entry.getKey(), joinList(entry.getValue(), ","));
+        Map<String, List<String>> target = playlists == null ? Map.of() : playlists;
+        for (String key : songLists.namesWithPrefix(PLAYLIST_PREFIX)) {
+            if (!target.containsKey(key.substring(PLAYLIST_PREFIX.length()))) {
+                songLists.delete(key);
             }
         }
-        save();
+        for (Map.Entry<String, List<String>> entry : target.entrySet()) {
+            songLists.update(PLAYLIST_PREFIX + entry.getKey(), entry.getValue());
+        }
+    }
+
+    void setPlaylistSongs(String playlist, List<String> songs) {
+        songLists.update(PLAYLIST_PREFIX + playlist, songs);
+    }
+
+    void addPlaylistSong(String playlist, String song) {
+        songLists.add(PLAYLIST_PREFIX + playlist, song);
+    }
+
+    void addPlaylistSongs(String playlist, Collection<String> songs) {
+        songLists.addAll(PLAYLIST_PREFIX + playlist, songs);
+    }
+
+    void removePlaylistSong(String playlist, String song) {
+        songLists.remove(PLAYLIST_PREFIX + playlist, song);
+    }
+
+    void removePlaylistSongs(String playlist, Collection<String> songs) {
+        songLists.removeAll(PLAYLIST_PREFIX + playlist, songs);
+    }
+
+    void removePlaylistSongAt(String playlist, int index) {
+        songLists.removeAt(PLAYLIST_PREFIX + playlist, index);
+    }
+
+    void movePlaylistSong(String playlist, int from, int to) {
+        songLists.move(PLAYLIST_PREFIX + playlist, from, to);
+    }
+
+    void clearPlaylist(String playlist) {
+        songLists.clear(PLAYLIST_PREFIX + playlist);
+    }
+
+    void deletePlaylist(String playlist) {
+        songLists.delete(PLAYLIST_PREFIX + playlist);
     }
 
     String getCurrentSong() {
@@ -156,12 +235,41 @@ final class SongDataStore {
     }
 
     void setPlayHistory(List<String> history) {
-        props.setProperty("playHistory", joinList(history, ";"));
-        save();
+        songLists.update(HISTORY_KEY, history);
     }
 
     List<String> getPlayHistory() {
-        return parseList(props.getProperty("playHistory", ""), ";");
+        return songLists.get(HISTORY_KEY);
+    }
+
+    void setPlayCounts(Map<String, Integer> playCounts) {
+        // One "<key>\t<count>" entry per song, in history order, so a replay journals as a move to the end.
+        List<String> entries = new ArrayList<>(playCounts.size());
+        playCounts.forEach((key, count) -> entries.add(key + '\t' + count));
+        songLists.update(PLAY_COUNTS_KEY, entries);
+    }
+
+    Map<String, Integer> getPlayCounts() {
+        Map<String, Integer> playCounts = new LinkedHashMap<>();
+        for (String entry : songLists.get(PLAY_COUNTS_KEY)) {
+            int separator = entry.lastIndexOf('\t');
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                playCounts.put(entry.substring(0, separator), Integer.parseInt(entry.substring(separator + 1)));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return playCounts;
+    }
+
+    void setRecentBeatmapSets(List<String> setIds) {
+        songLists.update(RECENT_SETS_KEY, setIds);
+    }
+
+    List<String> getRecentBeatmapSets() {
+        return songLists.get(RECENT_SETS_KEY);
     }
 
     void setHistoryIndex(int index) {
@@ -178,39 +286,70 @@ final class SongDataStore {
     }
 
     void clearHistoryData() {
-        props.remove("playHistory");
+        songLists.delete(HISTORY_KEY);
+        songLists.delete(PLAY_COUNTS_KEY);
+        songLists.delete(RECENT_SETS_KEY);
         props.remove("historyIndex");
         save();
     }
 
     SongLibraryCache loadLibraryCache() {
-        String json = props.getProperty(CACHE_KEY);
-        if (json == null || json.isBlank()) {
-            return null;
-        }
         try {
-            SongLibraryCache cache = GSON.fromJson(json, SongLibraryCache.class);
-            if (cache == null || cache.version() != SongLibraryCache.FORMAT_VERSION) {
-                return null;
+            SongLibraryCache cache = SongLibraryCacheCodec.read(libraryCacheFile);
+            if (cache != null) {
+                return cache;
             }
-            return cache;
-        } catch (JsonSyntaxException ex) {
-            return null;
+        } catch (IOException e) {
+            System.out.println("No se pudo leer " + LIBRARY_CACHE_FILE + ".");
         }
+        return migrateLegacyLibraryCache();
     }
 
     void saveLibraryCache(SongLibraryCache cache) {
         if (cache == null) {
-            props.remove(CACHE_KEY);
-        } else {
-            props.setProperty(CACHE_KEY, GSON.toJson(cache));
+            clearLibraryCache();
+            return;
         }
-        save();
+        ensureConfigDirectory();
+        try {
+            SongLibraryCacheCodec.write(libraryCacheFile, cache);
+        } catch (IOException e) {
+            System.out.println("No se pudo guardar " + LIBRARY_CACHE_FILE + ".");
+        }
+        removeLegacyLibraryCache();
     }
 
     void clearLibraryCache() {
-        props.remove(CACHE_KEY);
-        save();
+        try {
+            Files.deleteIfExists(libraryCacheFile);
+        } catch (IOException ignored) {
+        }
+        removeLegacyLibraryCache();
+    }
+
+    private SongLibraryCache migrateLegacyLibraryCache() {
+        String json = props.getProperty(LEGACY_CACHE_KEY);
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        SongLibraryCache cache;
+        try {
+            cache = GSON.fromJson(json, SongLibraryCache.class);
+        } catch (JsonSyntaxException ex) {
+            cache = null;
+        }
+        if (cache == null || cache.version() != SongLibraryCache.FORMAT_VERSION) {
+            removeLegacyLibraryCache();
+            return null;
+        }
+        saveLibraryCache(cache);
+        return cache;
+    }
+
+    private void removeLegacyLibraryCache() {
+        if (props.remove(LEGACY_CACHE_KEY) != null) {
+            save();
+        }
     }
 
     private List<String> parseList(String val, String separator) {
@@ -220,13 +359,6 @@ final class SongDataStore {
         return new ArrayList<>(Arrays.asList(val.split(separator)));
     }
 
-    private String joinList(List<String> values, String separator) {
-        if (values == null || values.isEmpty()) {
-            return "";
-        }
-        return String.join(separator, values);
-    }
-
     private double parseDouble(String val, double def) {
         try {
             return Double.parseDouble(val);
@@ -1,7 +1,12 @@
 package com.osuplayer.config;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public record SongLibraryCache(
     int version,
@@ -13,7 +18,7 @@ public record SongLibraryCache(
     int totalDifficultyCount
 ) {
 
-    public static final int FORMAT_VERSION = 1;
+    public static final int FORMAT_VERSION = 2;
 
     public SongLibraryCache {
         folderSignatures = folderSignatures == null ? List.of() : List.copyOf(folderSignatures);
@@ -54,8 +59,59 @@ public record SongLibraryCache(
         return true;
     }
 
+    public boolean isForFolder(String normalizedFolder) {
+        return normalizedFolder != null && folderPath != null && normalizedFolder.equalsIgnoreCase(folderPath);
+    }
+
+    public FolderDiff diff(Map<String, Long> currentSignatures) {
+        Map<String, Long> current = currentSignatures == null ? Map.of() : currentSignatures;
+        Set<String> added = new HashSet<>();
+        Set<String> modified = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        Map<String, Long> cachedSignatures = new HashMap<>(folderSignatures.size());
+        for (FolderSignature signature : folderSignatures) {
+            cachedSignatures.put(signature.path(), signature.lastModified());
+            Long currentModified = current.get(signature.path());
+            if (currentModified == null) {
+                removed.add(signature.path());
+            } else if (currentModified != signature.lastModified()) {
+                modified.add(signature.path());
+            }
+        }
+        for (String path : current.keySet()) {
+            if (!cachedSignatures.containsKey(path)) {
+                added.add(path);
+            }
+        }
+        return new FolderDiff(added, modified, removed);
+    }
+
+    public Map<String, List<CachedSongEntry>> entriesByFolder() {
+        Map<String, List<CachedSongEntry>> grouped = new LinkedHashMap<>();
+        for (CachedSongEntry entry : entries) {
+            grouped.computeIfAbsent(entry.baseFolder(), key -> new ArrayList<>()).add(entry);
+        }
+        return grouped;
+    }
+
     public record FolderSignature(String path, long lastModified) { }
 
+    public record FolderDiff(Set<String> added, Set<String> modified, Set<String> removed) {
+        public FolderDiff {
+            added = Set.copyOf(added);
+            modified = Set.copyOf(modified);
+            removed = Set.copyOf(removed);
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+        }
+
+        public boolean requiresRescan(String folderPath) {
+            return added.contains(folderPath) || modified.contains(folderPath);
+        }
+    }
+
     public record CachedSongEntry(
         String baseName,
         String title,
@@ -72,7 +128,8 @@ public record SongLibraryCache(
         boolean showDifficulty,
         String beatmapId,
         String beatmapSetId,
-        String source
+        String source,
+        String searchKey
     ) {
         public CachedSongEntry {
             tags = tags == null ? List.of() : List.copyOf(tags);
@@ -0,0 +1,269 @@
+package com.osuplayer.config;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.osuplayer.runtimes.RuntimePlatform;
+
+final class SongLibraryCacheCodec {
+
+    private static final int MAGIC = 0x4F534C43;
+    private static final int CODEC_VERSION = 1;
+    private static final int NO_STRING = -1;
+
+    private SongLibraryCacheCodec() {
+    }
+
+    static SongLibraryCache read(Path file) throws IOException {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            return decode(mapOrRead(channel, (int) size));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException ex) {
+            return null;
+        }
+    }
+
+    static void write(Path file, SongLibraryCache cache) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+            encode(cache, output);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static ByteBuffer mapOrRead(FileChannel channel, int size) throws IOException {
+        if (RuntimePlatform.CURRENT != RuntimePlatform.WINDOWS) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Fin inesperado de la caché de la biblioteca");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void encode(SongLibraryCache cache, OutputStream target) throws IOException {
+        StringTable strings = new StringTable();
+        ListTable lists = new ListTable();
+        for (SongLibraryCache.CachedSongEntry entry : cache.entries()) {
+            lists.indexOf(entry.tags(), strings);
+            lists.indexOf(entry.creators(), strings);
+        }
+
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(MAGIC);
+        out.writeInt(CODEC_VERSION);
+        out.writeInt(cache.version());
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        body.writeInt(strings.indexOf(cache.folderPath()));
+        body.writeLong(cache.rootLastModified());
+        body.writeInt(cache.totalDifficultyCount());
+
+        body.writeInt(cache.folderSignatures().size());
+        for (SongLibraryCache.FolderSignature signature : cache.folderSignatures()) {
+            body.writeInt(strings.indexOf(signature.path()));
+            body.writeLong(signature.lastModified());
+        }
+
+        body.writeInt(cache.folderDifficultyCounts().size());
+        for (Map.Entry<String, Integer> entry : cache.folderDifficultyCounts().entrySet()) {
+            body.writeInt(strings.indexOf(entry.getKey()));
+            body.writeInt(entry.getValue() == null ? 0 : entry.getValue());
+        }
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        body.writeInt(cache.entries().size());
+        for (SongLibraryCache.CachedSongEntry entry : cache.entries()) {
+            recordBytes.reset();
+            record.writeInt(strings.indexOf(entry.baseName()));
+            record.writeInt(strings.indexOf(entry.title()));
+            record.writeInt(strings.indexOf(entry.artist()));
+            record.writeInt(strings.indexOf(entry.difficultyName()));
+            record.writeInt(strings.indexOf(entry.mapper()));
+            record.writeInt(strings.indexOf(entry.audioPath()));
+            record.writeInt(strings.indexOf(entry.videoPath()));
+            record.writeLong(entry.videoOffsetMillis());
+            record.writeInt(strings.indexOf(entry.backgroundPath()));
+            record.writeInt(strings.indexOf(entry.baseFolder()));
+            record.writeInt(lists.indexOf(entry.tags(), strings));
+            record.writeInt(lists.indexOf(entry.creators(), strings));
+            record.writeBoolean(entry.showDifficulty());
+            record.writeInt(strings.indexOf(entry.beatmapId()));
+            record.writeInt(strings.indexOf(entry.beatmapSetId()));
+            record.writeInt(strings.indexOf(entry.source()));
+            record.writeInt(strings.indexOf(entry.searchKey()));
+            record.flush();
+            body.writeInt(recordBytes.size());
+            recordBytes.writeTo(body);
+        }
+        body.flush();
+
+        out.writeInt(strings.values.size());
+        for (String value : strings.values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(lists.values.size());
+        for (int[] list : lists.values) {
+            out.writeInt(list.length);
+            for (int index : list) {
+                out.writeInt(index);
+            }
+        }
+        bodyBytes.writeTo(out);
+        out.flush();
+    }
+
+    private static SongLibraryCache decode(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != CODEC_VERSION) {
+            return null;
+        }
+        int libraryVersion = buffer.getInt();
+        if (libraryVersion != SongLibraryCache.FORMAT_VERSION) {
+            return null;
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        List<List<String>> lists = new ArrayList<>();
+        int listCount = buffer.getInt();
+        for (int i = 0; i < listCount; i++) {
+            String[] values = new String[buffer.getInt()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = strings[buffer.getInt()];
+            }
+            lists.add(List.of(values));
+        }
+
+        String folderPath = string(strings, buffer.getInt());
+        long rootLastModified = buffer.getLong();
+        int totalDifficultyCount = buffer.getInt();
+
+        int signatureCount = buffer.getInt();
+        List<SongLibraryCache.FolderSignature> signatures = new ArrayList<>(signatureCount);
+        for (int i = 0; i < signatureCount; i++) {
+            signatures.add(new SongLibraryCache.FolderSignature(string(strings, buffer.getInt()), buffer.getLong()));
+        }
+
+        int countEntries = buffer.getInt();
+        Map<String, Integer> difficultyCounts = new HashMap<>(Math.max(16, countEntries * 2));
+        for (int i = 0; i < countEntries; i++) {
+            difficultyCounts.put(string(strings, buffer.getInt()), buffer.getInt());
+        }
+
+        int entryCount = buffer.getInt();
+        List<SongLibraryCache.CachedSongEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            int recordLength = buffer.getInt();
+            int recordEnd = buffer.position() + recordLength;
+            entries.add(new SongLibraryCache.CachedSongEntry(
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                buffer.getLong(),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                lists.get(buffer.getInt()),
+                lists.get(buffer.getInt()),
+                buffer.get() != 0,
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()),
+                string(strings, buffer.getInt())
+            ));
+            buffer.position(recordEnd);
+        }
+
+        return new SongLibraryCache(libraryVersion, folderPath, rootLastModified, signatures, entries,
+            difficultyCounts, totalDifficultyCount);
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer existing = indexes.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int index = values.size();
+            values.add(value);
+            indexes.put(value, index);
+            return index;
+        }
+    }
+
+    private static final class ListTable {
+        private final Map<List<String>, Integer> indexes = new LinkedHashMap<>();
+        private final List<int[]> values = new ArrayList<>();
+
+        int indexOf(List<String> list, StringTable strings) {
+            List<String> key = list == null ? List.of() : list;
+            Integer existing = indexes.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int[] encoded = new int[key.size()];
+            for (int i = 0; i < encoded.length; i++) {
+                String value = key.get(i);
+                encoded[i] = strings.indexOf(value == null ? "" : value);
+            }
+            int index = values.size();
+            values.add(encoded);
+            indexes.put(key, index);
+            return index;
+        }
+    }
+}
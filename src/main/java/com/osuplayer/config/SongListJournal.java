@@ -0,0 +1,506 @@
+package com.osuplayer.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class SongListJournal {
+
+    private static final int SNAPSHOT_MAGIC = 0x4F534C53;
+    private static final int JOURNAL_MAGIC = 0x4F534C4A;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_REMOVE_AT = 3;
+    private static final byte OP_MOVE = 4;
+    private static final byte OP_CLEAR = 5;
+    private static final byte OP_REPLACE = 6;
+    private static final byte OP_DELETE = 7;
+    private static final byte OP_ADD_ALL = 8;
+    private static final byte OP_REMOVE_ALL = 9;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Map<String, List<String>> lists = new LinkedHashMap<>();
+    private DataOutputStream journal;
+    private long generation;
+    private boolean journalCurrent;
+    private int journalRecords;
+    private boolean existedOnDisk;
+    private boolean damagedJournal;
+
+    SongListJournal(Path snapshotFile, Path journalFile) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        load();
+    }
+
+    synchronized boolean existedOnDisk() {
+        return existedOnDisk;
+    }
+
+    synchronized boolean contains(String list) {
+        return lists.containsKey(list);
+    }
+
+    synchronized List<String> get(String list) {
+        List<String> values = lists.get(list);
+        return values == null ? new ArrayList<>() : new ArrayList<>(values);
+    }
+
+    synchronized Map<String, List<String>> getWithPrefix(String prefix) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : lists.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.put(entry.getKey().substring(prefix.length()), new ArrayList<>(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    synchronized List<String> namesWithPrefix(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (String name : lists.keySet()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    synchronized void add(String list, String song) {
+        if (song == null) {
+            return;
+        }
+        applyAdd(list, song);
+        append(OP_ADD, list, out -> out.writeUTF(song));
+    }
+
+    synchronized void remove(String list, String song) {
+        if (applyRemove(list, song)) {
+            append(OP_REMOVE, list, out -> out.writeUTF(song));
+        }
+    }
+
+    synchronized void addAll(String list, Collection<String> songs) {
+        if (songs == null) {
+            return;
+        }
+        List<String> added = new ArrayList<>(songs);
+        added.removeIf(song -> song == null);
+        if (added.isEmpty()) {
+            return;
+        }
+        if (added.size() == 1) {
+            add(list, added.get(0));
+            return;
+        }
+        lists.computeIfAbsent(list, key -> new ArrayList<>()).addAll(added);
+        append(OP_ADD_ALL, list, out -> writeSongs(out, added));
+    }
+
+    synchronized void removeAll(String list, Collection<String> songs) {
+        if (songs == null || songs.isEmpty()) {
+            return;
+        }
+        if (songs.size() == 1) {
+            remove(list, songs.iterator().next());
+            return;
+        }
+        List<String> removed = applyRemoveAll(list, songs);
+        if (!removed.isEmpty()) {
+            append(OP_REMOVE_ALL, list, out -> writeSongs(out, removed));
+        }
+    }
+
+    synchronized void removeAt(String list, int index) {
+        if (applyRemoveAt(list, index)) {
+            append(OP_REMOVE_AT, list, out -> out.writeInt(index));
+        }
+    }
+
+    synchronized void move(String list, int from, int to) {
+        if (applyMove(list, from, to)) {
+            append(OP_MOVE, list, out -> {
+                out.writeInt(from);
+                out.writeInt(to);
+            });
+        }
+    }
+
+    synchronized void clear(String list) {
+        List<String> values = lists.get(list);
+        if (values != null && values.isEmpty()) {
+            return;
+        }
+        lists.put(list, new ArrayList<>());
+        append(OP_CLEAR, list, out -> { });
+    }
+
+    synchronized void delete(String list) {
+        if (lists.remove(list) != null) {
+            append(OP_DELETE, list, out -> { });
+        }
+    }
+
+    synchronized void update(String list, List<String> newValues) {
+        List<String> target = newValues == null ? List.of() : newValues;
+        List<String> current = lists.get(list);
+        if (current == null) {
+            replace(list, target);
+            return;
+        }
+        if (current.equals(target)) {
+            return;
+        }
+        int common = 0;
+        int limit = Math.min(current.size(), target.size());
+        while (common < limit && current.get(common).equals(target.get(common))) {
+            common++;
+        }
+        if (common == current.size()) {
+            addAll(list, new ArrayList<>(target.subList(common, target.size())));
+            return;
+        }
+        if (target.size() == current.size() - 1
+                && current.subList(common + 1, current.size()).equals(target.subList(common, target.size()))) {
+            removeAt(list, common);
+            return;
+        }
+        if (target.size() == current.size()
+                && current.subList(common + 1, current.size()).equals(target.subList(common, target.size() - 1))) {
+            removeAt(list, common);
+            add(list, target.get(target.size() - 1));
+            return;
+        }
+        replace(list, target);
+    }
+
+    synchronized void replace(String list, List<String> songs) {
+        List<String> copy = songs == null ? new ArrayList<>() : new ArrayList<>(songs);
+        copy.removeIf(song -> song == null);
+        lists.put(list, copy);
+        append(OP_REPLACE, list, out -> writeSongs(out, copy));
+    }
+
+    synchronized void flush() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            System.out.println("No se pudo guardar " + journalFile.getFileName() + ".");
+        }
+    }
+
+    synchronized void compact() {
+        closeJournal();
+        long nextGeneration = generation + 1;
+        try {
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(nextGeneration);
+                out.writeInt(lists.size());
+                for (Map.Entry<String, List<String>> entry : lists.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (String song : entry.getValue()) {
+                        out.writeUTF(song);
+                    }
+                }
+            }
+            moveAtomically(temp, snapshotFile);
+            // A journal left behind by a crash from here on carries the old
+            // generation and is skipped on load; the next append truncates it.
+            generation = nextGeneration;
+            journalCurrent = false;
+            journalRecords = 0;
+            damagedJournal = false;
+            existedOnDisk = true;
+            Files.deleteIfExists(journalFile);
+        } catch (IOException e) {
+            System.out.println("No se pudo compactar " + snapshotFile.getFileName() + ".");
+        }
+    }
+
+    private void load() {
+        boolean snapshotLoaded = readSnapshot();
+        boolean journalLoaded = replayJournal();
+        existedOnDisk = snapshotLoaded || journalLoaded;
+        if (damagedJournal || journalRecords > compactionThreshold()) {
+            compact();
+        }
+    }
+
+    private boolean readSnapshot() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                return false;
+            }
+            long snapshotGeneration = readGeneration(in);
+            if (snapshotGeneration < 0) {
+                return false;
+            }
+            int listCount = in.readInt();
+            for (int i = 0; i < listCount; i++) {
+                String name = in.readUTF();
+                int size = in.readInt();
+                List<String> values = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    values.add(in.readUTF());
+                }
+                lists.put(name, values);
+            }
+            generation = snapshotGeneration;
+            return true;
+        } catch (IOException e) {
+            lists.clear();
+            generation = 0;
+            System.out.println("No se pudo leer " + snapshotFile.getFileName() + ".");
+            return false;
+        }
+    }
+
+    private boolean replayJournal() {
+        if (!Files.isRegularFile(journalFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+            if (in.readInt() != JOURNAL_MAGIC) {
+                damagedJournal = true;
+                return false;
+            }
+            long journalGeneration = readGeneration(in);
+            if (journalGeneration < 0) {
+                damagedJournal = true;
+                return false;
+            }
+            if (journalGeneration < generation) {
+                // Already folded into the snapshot by a compaction that did
+                // not get to delete the journal.
+                return false;
+            }
+            if (journalGeneration > generation) {
+                // The snapshot this journal was based on is gone or unreadable.
+                generation = journalGeneration;
+                damagedJournal = true;
+            }
+            journalCurrent = true;
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+                replayRecord(op, in);
+                journalRecords++;
+            }
+        } catch (EOFException truncatedTail) {
+            damagedJournal = true;
+            System.out.println("Registro incompleto en " + journalFile.getFileName() + ", se ignora el final.");
+        } catch (IOException e) {
+            damagedJournal = true;
+            System.out.println("No se pudo leer " + journalFile.getFileName() + ".");
+        }
+        return true;
+    }
+
+    private void replayRecord(byte op, DataInputStream in) throws IOException {
+        String list = in.readUTF();
+        switch (op) {
+            case OP_ADD -> applyAdd(list, in.readUTF());
+            case OP_REMOVE -> applyRemove(list, in.readUTF());
+            case OP_REMOVE_AT -> applyRemoveAt(list, in.readInt());
+            case OP_MOVE -> applyMove(list, in.readInt(), in.readInt());
+            case OP_CLEAR -> lists.put(list, new ArrayList<>());
+            case OP_REPLACE -> lists.put(list, readSongs(in));
+            case OP_DELETE -> lists.remove(list);
+            case OP_ADD_ALL -> lists.computeIfAbsent(list, key -> new ArrayList<>()).addAll(readSongs(in));
+            case OP_REMOVE_ALL -> applyRemoveAll(list, readSongs(in));
+            default -> throw new IOException("Operación desconocida " + op);
+        }
+    }
+
+    private static long readGeneration(DataInputStream in) throws IOException {
+        return in.readInt() == FORMAT_VERSION ? in.readLong() : -1;
+    }
+
+    private void applyAdd(String list, String song) {
+        lists.computeIfAbsent(list, key -> new ArrayList<>()).add(song);
+    }
+
+    private boolean applyRemove(String list, String song) {
+        List<String> values = lists.get(list);
+        return values != null && values.remove(song);
+    }
+
+    private List<String> applyRemoveAll(String list, Collection<String> songs) {
+        List<String> values = lists.get(list);
+        List<String> removed = new ArrayList<>();
+        if (values == null || values.isEmpty()) {
+            return removed;
+        }
+        Map<String, Integer> pending = new HashMap<>();
+        for (String song : songs) {
+            pending.merge(song, 1, Integer::sum);
+        }
+        values.removeIf(song -> {
+            Integer count = pending.get(song);
+            if (count == null) {
+                return false;
+            }
+            if (count == 1) {
+                pending.remove(song);
+            } else {
+                pending.put(song, count - 1);
+            }
+            removed.add(song);
+            return true;
+        });
+        return removed;
+    }
+
+    private static List<String> readSongs(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Tamaño de lista inválido " + size);
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private static void writeSongs(DataOutputStream out, List<String> songs) throws IOException {
+        out.writeInt(songs.size());
+        for (String song : songs) {
+            out.writeUTF(song);
+        }
+    }
+
+    private boolean applyRemoveAt(String list, int index) {
+        List<String> values = lists.get(list);
+        if (values == null || index < 0 || index >= values.size()) {
+            return false;
+        }
+        values.remove(index);
+        return true;
+    }
+
+    private boolean applyMove(String list, int from, int to) {
+        List<String> values = lists.get(list);
+        if (values == null || from == to
+                || from < 0 || from >= values.size()
+                || to < 0 || to >= values.size()) {
+            return false;
+        }
+        values.add(to, values.remove(from));
+        return true;
+    }
+
+    private void append(byte op, String list, RecordBody body) {
+        try {
+            DataOutputStream out = openJournal();
+            out.writeByte(op);
+            out.writeUTF(list);
+            body.write(out);
+            out.flush();
+            journalRecords++;
+        } catch (IOException e) {
+            System.out.println("No se pudo guardar " + journalFile.getFileName() + ".");
+            closeJournal();
+            return;
+        }
+        if (journalRecords > compactionThreshold()) {
+            compact();
+        }
+    }
+
+    private DataOutputStream openJournal() throws IOException {
+        if (journal != null) {
+            return journal;
+        }
+        Files.createDirectories(journalFile.toAbsolutePath().getParent());
+        OutputStream stream;
+        if (journalCurrent) {
+            stream = Files.newOutputStream(journalFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            stream = Files.newOutputStream(journalFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        if (!journalCurrent) {
+            try {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(generation);
+                out.flush();
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+            journalCurrent = true;
+        }
+        journal = out;
+        existedOnDisk = true;
+        return journal;
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+        }
+        journal = null;
+    }
+
+    private int compactionThreshold() {
+        int totalEntries = 0;
+        for (List<String> values : lists.values()) {
+            totalEntries += values.size();
+        }
+        return Math.max(MIN_COMPACTION_RECORDS, totalEntries);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,105 @@
+package com.osuplayer.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+final class WriteBehindPropertiesFile {
+
+    static final long DEFAULT_DELAY_MILLIS = 1500;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "osulux-config-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Properties props;
+    private final Path file;
+    private final String comment;
+    private final Object stateLock = new Object();
+    private final Object writeLock = new Object();
+    private volatile long delayMillis;
+    private boolean dirty;
+    private ScheduledFuture<?> pendingFlush;
+
+    WriteBehindPropertiesFile(Properties props, Path file, String comment, long delayMillis) {
+        this.props = props;
+        this.file = file;
+        this.comment = comment;
+        this.delayMillis = Math.max(0, delayMillis);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "osulux-config-flush"));
+    }
+
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = Math.max(0, delayMillis);
+    }
+
+    void markDirty() {
+        long delay = delayMillis;
+        if (delay <= 0) {
+            synchronized (stateLock) {
+                dirty = true;
+            }
+            flush();
+            return;
+        }
+        synchronized (stateLock) {
+            dirty = true;
+            scheduleFlushLocked(delay);
+        }
+    }
+
+    void flush() {
+        synchronized (writeLock) {
+            Properties snapshot = new Properties();
+            synchronized (stateLock) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                // Changes made while this write runs need a flush of their own.
+                pendingFlush = null;
+                synchronized (props) {
+                    snapshot.putAll(props);
+                }
+            }
+            try {
+                writeAtomically(snapshot);
+            } catch (IOException e) {
+                synchronized (stateLock) {
+                    dirty = true;
+                    scheduleFlushLocked(Math.max(delayMillis, DEFAULT_DELAY_MILLIS));
+                }
+                System.out.println("No se pudo guardar " + file.getFileName() + ".");
+            }
+        }
+    }
+
+    private void scheduleFlushLocked(long delay) {
+        if (pendingFlush == null || pendingFlush.isDone()) {
+            pendingFlush = FLUSHER.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void writeAtomically(Properties snapshot) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temp)) {
+            snapshot.store(output, comment);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -2,34 +2,42 @@ package com.osuplayer.favorites;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import com.osuplayer.config.ConfigManager;
 import com.osuplayer.playback.PlaylistManager;
+import com.osuplayer.playback.SongKeyResolver;
+import com.osuplayer.playback.SongKeys;
 
 public class FavoritesManager {
 
     private final Set<String> favorites;
     private final ConfigManager configManager;
     private final PlaylistManager playlistManager;
+    private final SongKeyResolver songKeys;
 
-    public FavoritesManager(ConfigManager configManager, PlaylistManager playlistManager) {
+    public FavoritesManager(ConfigManager configManager, PlaylistManager playlistManager, SongKeyResolver songKeys) {
         this.configManager = configManager;
         this.playlistManager = playlistManager;
-        this.favorites = new HashSet<>(configManager.getFavorites());
+        this.songKeys = songKeys;
+        this.favorites = new LinkedHashSet<>(configManager.getFavorites());
     }
 
     public void addFavorite(String song) {
-        if (song != null && favorites.add(song)) {
-            saveFavorites();
+        String key = songKeys.songKeyOf(song);
+        if (key != null && favorites.add(key)) {
+            configManager.addFavorite(key);
+            playlistManager.addToPlaylist(PlaylistManager.PLAYLIST_FAVORITES, song);
         }
     }
 
     public void removeFavorite(String song) {
-        if (song != null && favorites.remove(song)) {
-            saveFavorites();
+        String key = songKeys.songKeyOf(song);
+        if (key != null && favorites.remove(key)) {
+            configManager.removeFavorite(key);
+            playlistManager.removeFromPlaylist(PlaylistManager.PLAYLIST_FAVORITES, song);
         }
     }
 
@@ -42,22 +50,46 @@ public class FavoritesManager {
     }
 
     public boolean isFavorite(String song) {
-        return song != null && favorites.contains(song);
+        String key = songKeys.songKeyOf(song);
+        return key != null && favorites.contains(key);
     }
 
     public Set<String> getFavorites() {
-        return Collections.unmodifiableSet(favorites);
+        Set<String> names = new LinkedHashSet<>();
+        for (String key : favorites) {
+            String name = songKeys.songNameOf(key);
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return Collections.unmodifiableSet(names);
     }
-    
-    public void validateFavorites(Set<String> allAvailableSongs) {
-        if (favorites.retainAll(allAvailableSongs)) {
-            saveFavorites();
+
+    public void migrateLegacyEntries() {
+        boolean legacy = false;
+        for (String value : favorites) {
+            if (!SongKeys.isKey(value)) {
+                legacy = true;
+                break;
+            }
+        }
+        if (!legacy) {
+            return;
+        }
+        Set<String> migrated = new LinkedHashSet<>();
+        for (String value : favorites) {
+            String key = SongKeys.isKey(value) ? value : songKeys.songKeyOf(value);
+            if (key != null) {
+                migrated.add(key);
+            }
         }
+        favorites.clear();
+        favorites.addAll(migrated);
+        saveFavorites();
     }
 
     private void saveFavorites() {
         List<String> favList = new ArrayList<>(favorites);
         configManager.setFavorites(favList);
-        playlistManager.setPlaylistSongs(PlaylistManager.PLAYLIST_FAVORITES, favList);
     }
-}
\ No newline at end of file
+}
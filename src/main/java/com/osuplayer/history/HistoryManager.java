@@ -1,68 +1,75 @@
 package com.osuplayer.history;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class HistoryManager {
     private final List<String> history = new ArrayList<>();
+    private final Map<String, Integer> playCounts = new HashMap<>();
     private int currentIndex = -1;
 
     
-    public void addSong(String songName) {
+    public synchronized void addSong(String songName) {
         if (songName == null) return;
         history.remove(songName);
         history.add(songName);
+        playCounts.merge(songName, 1, Integer::sum);
         currentIndex = history.size() - 1;
     }
 
     
-    public boolean hasPrevious() {
+    public synchronized boolean hasPrevious() {
         return currentIndex > 0;
     }
 
     
-    public boolean hasNext() {
+    public synchronized boolean hasNext() {
         return currentIndex >= 0 && currentIndex < history.size() - 1;
     }
 
     
-    public String getPrevious() {
+    public synchronized String getPrevious() {
         if (!hasPrevious()) return null;
         currentIndex--;
         return history.get(currentIndex);
     }
 
     
-    public String getNext() {
+    public synchronized String getNext() {
         if (!hasNext()) return null;
         currentIndex++;
         return history.get(currentIndex);
     }
 
     
-    public String getCurrent() {
+    public synchronized String getCurrent() {
         if (currentIndex < 0 || currentIndex >= history.size()) return null;
         return history.get(currentIndex);
     }
 
     
-    public int getIndex() {
+    public synchronized int getIndex() {
         return currentIndex;
     }
 
     
-    public void setIndex(int index) {
+    public synchronized void setIndex(int index) {
         if (index >= 0 && index < history.size()) {
             currentIndex = index;
         }
     }
 
     
-    public void setHistory(List<String> newHistory, int index) {
+    public synchronized void setHistory(List<String> newHistory, int index) {
         history.clear();
         if (newHistory != null) {
             history.addAll(newHistory);
         }
+        playCounts.keySet().retainAll(new HashSet<>(history));
         if (index >= 0 && index < history.size()) {
             currentIndex = index;
         } else {
@@ -71,18 +78,35 @@ public class HistoryManager {
     }
 
     
-    public List<String> getHistory() {
+    public synchronized List<String> getHistory() {
         return new ArrayList<>(history);
     }
 
     
-    public void clear() {
+    public synchronized Map<String, Integer> getPlayCounts() {
+        return new HashMap<>(playCounts);
+    }
+
+    
+    public synchronized void mergePlayCounts(Map<String, Integer> storedCounts) {
+        if (storedCounts == null) return;
+        Set<String> known = new HashSet<>(history);
+        storedCounts.forEach((song, count) -> {
+            if (known.contains(song) && count != null && count > 0) {
+                playCounts.merge(song, count, Integer::sum);
+            }
+        });
+    }
+
+    
+    public synchronized void clear() {
         history.clear();
+        playCounts.clear();
         currentIndex = -1;
     }
 
     
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return history.isEmpty();
     }
 }
@@ -141,6 +141,7 @@ public final class English implements LanguagePack {
         Map.entry("Donar con PayPal", "Donate with PayPal"),
         Map.entry("Canciones cargadas: %s", "Loaded songs: %s"),
         Map.entry("Dificultades detectadas: %s", "Detected difficulties: %s"),
+        Map.entry("Textos compartidos: %.1f%% de aciertos, ~%d KB ahorrados", "Shared strings: %.1f%% hit rate, ~%d KB saved"),
         Map.entry("Carpeta Songs:", "Songs folder:"),
         Map.entry("No seleccionada", "Not selected"),
         Map.entry("Tamaño carpeta Songs: No disponible", "Songs folder size: Not available"),
@@ -156,6 +157,17 @@ public final class English implements LanguagePack {
         Map.entry("Buscar canciones, artistas, creadores o tags...", "Search songs, artists, creators, or tags..."),
         Map.entry("Selecciona tu carpeta de canciones de osu!", "Select your osu! Songs folder"),
         Map.entry("Mantener el historial al cerrar el programa", "Keep history when closing the app"),
+        Map.entry("Detectar cambios en la carpeta Songs automáticamente", "Detect changes in the Songs folder automatically"),
+        Map.entry("Tolerar errores de escritura al buscar", "Tolerate typos when searching"),
+        Map.entry("Ordenar resultados de búsqueda por relevancia", "Sort search results by relevance"),
+        Map.entry("Mostrar canciones mientras se escanea la biblioteca", "Show songs while the library is being scanned"),
+        Map.entry("Abrir la biblioteca guardada y comprobar cambios en segundo plano", "Open the saved library and check for changes in the background"),
+        Map.entry("Importar la biblioteca desde osu!.db cuando esté disponible", "Import the library from osu!.db when available"),
+        Map.entry("Importar colecciones de osu!", "Import osu! collections"),
+        Map.entry("Selecciona el archivo collection.db de osu!", "Select the osu! collection.db file"),
+        Map.entry("Colecciones importadas", "Collections imported"),
+        Map.entry("Se importaron %d colecciones como playlists.", "Imported %d collections as playlists."),
+        Map.entry("No se pudieron importar las colecciones", "Could not import the collections"),
         Map.entry("Cargando canciones", "Loading songs"),
         Map.entry("Error al cargar canciones", "Couldn't load songs"),
         Map.entry("Causa desconocida", "Unknown cause"),
@@ -272,7 +284,16 @@ public final class English implements LanguagePack {
         Map.entry("Error al buscar", "Search error"),
         Map.entry("Sin credenciales de osu!, usando mirrors.", "No osu! credentials, using mirrors."),
         Map.entry("Configura client_id y client_secret o usa los mirrors públicos.", "Set client_id and client_secret or use public mirrors."),
-        Map.entry("Todos los mirrors fallaron:%n%s", "All mirrors failed:%n%s")
+        Map.entry("Todos los mirrors fallaron:%n%s", "All mirrors failed:%n%s"),
+        Map.entry("Artista", "Artist"),
+        Map.entry("Mapper", "Mapper"),
+        Map.entry("Tag", "Tag"),
+        Map.entry("Contenido", "Content"),
+        Map.entry("Con fondo", "With background"),
+        Map.entry("Quitar filtros", "Clear filters"),
+        Map.entry("Sin resultados", "No results"),
+        Map.entry("Vigilancia parcial de la carpeta de canciones", "Songs folder partially watched"),
+        Map.entry("El sistema no permite vigilar todas las carpetas de beatmaps. Los cambios en algunas se detectarán con unos segundos de retraso.", "The system cannot watch every beatmap folder. Changes in some of them will be picked up a few seconds late.")
     );
 
     @Override
@@ -0,0 +1,190 @@
+package com.osuplayer.playback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.osuplayer.beatmaps.BeatmapFolderListing;
+import com.osuplayer.beatmaps.BeatmapParser;
+import com.osuplayer.beatmaps.OsuDatabase;
+
+final class BeatmapHashIndex {
+
+    private static final int HASH_BUFFER_SIZE = 1 << 14;
+
+    private final BeatmapParser beatmapParser;
+    private final Map<String, HashedOsuFile> hashedFiles = new HashMap<>();
+    private Map<String, List<OsuHash>> databaseHashes = Map.of();
+    private File databaseFile;
+    private long databaseModified = Long.MIN_VALUE;
+
+    BeatmapHashIndex(BeatmapParser beatmapParser) {
+        this.beatmapParser = beatmapParser;
+    }
+
+    synchronized Map<String, String> resolve(CatalogView songs, File osuDatabaseFile, Set<String> wantedHashes) {
+        Map<String, String> resolved = new HashMap<>();
+        if (wantedHashes == null || wantedHashes.isEmpty()) {
+            return resolved;
+        }
+        loadDatabaseHashes(osuDatabaseFile);
+
+        Map<String, List<Integer>> songsByFolder = new LinkedHashMap<>();
+        for (int id = songs.firstId(); id >= 0; id = songs.nextId(id)) {
+            String folder = songs.baseFolder(id);
+            if (folder != null) {
+                songsByFolder.computeIfAbsent(folder, key -> new ArrayList<>()).add(id);
+            }
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : songsByFolder.entrySet()) {
+            File folder = new File(entry.getKey());
+            for (OsuHash hash : hashesOf(folder)) {
+                if (!wantedHashes.contains(hash.md5()) || resolved.containsKey(hash.md5())) {
+                    continue;
+                }
+                String song = matchSong(songs, entry.getValue(), hash);
+                if (song != null) {
+                    resolved.put(hash.md5(), song);
+                }
+            }
+            if (resolved.size() == wantedHashes.size()) {
+                break;
+            }
+        }
+        return resolved;
+    }
+
+    private void loadDatabaseHashes(File osuDatabaseFile) {
+        long modified = osuDatabaseFile == null ? Long.MIN_VALUE : osuDatabaseFile.lastModified();
+        if (osuDatabaseFile == null || modified == 0L) {
+            databaseHashes = Map.of();
+            databaseFile = null;
+            databaseModified = Long.MIN_VALUE;
+            return;
+        }
+        if (osuDatabaseFile.equals(databaseFile) && modified == databaseModified) {
+            return;
+        }
+        Map<String, List<OsuHash>> grouped = new HashMap<>();
+        try {
+            OsuDatabase database = OsuDatabase.read(osuDatabaseFile.toPath());
+            for (Map.Entry<String, List<OsuDatabase.Beatmap>> entry : database.beatmapsByFolder().entrySet()) {
+                List<OsuHash> hashes = new ArrayList<>(entry.getValue().size());
+                for (OsuDatabase.Beatmap beatmap : entry.getValue()) {
+                    if (beatmap.md5() != null && !beatmap.md5().isBlank()) {
+                        hashes.add(new OsuHash(beatmap.md5().trim().toLowerCase(Locale.ROOT),
+                            beatmap.audioFilename(), beatmap.difficulty()));
+                    }
+                }
+                grouped.put(entry.getKey(), hashes);
+            }
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("No se pudo leer " + osuDatabaseFile.getAbsolutePath() + ": " + ex.getMessage());
+            grouped.clear();
+        }
+        databaseHashes = grouped;
+        databaseFile = osuDatabaseFile;
+        databaseModified = modified;
+    }
+
+    private List<OsuHash> hashesOf(File folder) {
+        List<OsuHash> fromDatabase = databaseHashes.get(folder.getName().toLowerCase(Locale.ROOT));
+        if (fromDatabase != null && folder.lastModified() <= databaseModified) {
+            return fromDatabase;
+        }
+        List<OsuHash> hashes = new ArrayList<>();
+        for (File osuFile : BeatmapFolderListing.read(folder).osuFiles()) {
+            OsuHash hash = hashOf(osuFile);
+            if (hash != null) {
+                hashes.add(hash);
+            }
+        }
+        return hashes;
+    }
+
+    private OsuHash hashOf(File osuFile) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(osuFile.toPath(), BasicFileAttributes.class);
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long length = attributes.size();
+        String key = osuFile.getAbsolutePath();
+        HashedOsuFile cached = hashedFiles.get(key);
+        if (cached != null && cached.lastModified() == lastModified && cached.length() == length) {
+            return cached.hash();
+        }
+
+        String md5 = md5Of(osuFile);
+        BeatmapParser.SongMetadata metadata = md5 == null ? null : beatmapParser.parseSongMetadata(osuFile);
+        OsuHash hash = md5 == null ? null
+            : new OsuHash(md5, metadata == null ? null : metadata.audioFilename, metadata == null ? null : metadata.version);
+        hashedFiles.put(key, new HashedOsuFile(lastModified, length, hash));
+        return hash;
+    }
+
+    private static String md5Of(File osuFile) {
+        try (InputStream in = Files.newInputStream(osuFile.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            System.err.println("No se pudo calcular el hash de " + osuFile.getAbsolutePath() + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private static String matchSong(CatalogView songs, List<Integer> folderSongs, OsuHash hash) {
+        String audioName = fileName(hash.audioFilename());
+        String fallback = null;
+        for (int id : folderSongs) {
+            if (audioName != null && !audioName.equalsIgnoreCase(fileName(songs.audioPath(id)))) {
+                continue;
+            }
+            if (hash.difficulty() != null && hash.difficulty().trim().equalsIgnoreCase(songs.difficulty(id))) {
+                return songs.displayName(id);
+            }
+            if (fallback == null) {
+                fallback = songs.displayName(id);
+            }
+        }
+        if (fallback == null && folderSongs.size() == 1) {
+            fallback = songs.displayName(folderSongs.get(0));
+        }
+        return fallback;
+    }
+
+    private static String fileName(String path) {
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        String normalized = path.replace('\\', '/').trim();
+        int separator = normalized.lastIndexOf('/');
+        return separator < 0 ? normalized : normalized.substring(separator + 1);
+    }
+
+    private record OsuHash(String md5, String audioFilename, String difficulty) {
+    }
+
+    private record HashedOsuFile(long lastModified, long length, OsuHash hash) {
+    }
+}
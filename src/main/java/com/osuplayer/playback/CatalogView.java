@@ -0,0 +1,204 @@
+package com.osuplayer.playback;
+
+import java.util.List;
+
+abstract class CatalogView {
+
+    static final int NO_SONG = -1;
+    static final int SEGMENT_BITS = 10;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    abstract Segment segment(int id);
+
+    abstract Integer lookup(String displayName);
+
+    abstract Integer lookupKey(String songKey);
+
+    abstract int highWaterMark();
+
+    abstract int size();
+
+    int idOf(String displayName) {
+        Integer id = displayName == null ? null : lookup(displayName);
+        return id == null ? NO_SONG : id;
+    }
+
+    int idOfKey(String songKey) {
+        Integer id = songKey == null ? null : lookupKey(songKey);
+        return id == null ? NO_SONG : id;
+    }
+
+    boolean contains(String displayName) {
+        return displayName != null && lookup(displayName) != null;
+    }
+
+    int firstId() {
+        return nextId(-1);
+    }
+
+    int nextId(int id) {
+        int limit = highWaterMark();
+        for (int next = id + 1; next < limit; next++) {
+            if (segment(next).alive[next & SEGMENT_MASK]) {
+                return next;
+            }
+        }
+        return NO_SONG;
+    }
+
+    String displayName(int id) { return segment(id).displayNames[id & SEGMENT_MASK]; }
+    String songKey(int id) { return segment(id).songKeys[id & SEGMENT_MASK]; }
+    String baseName(int id) { return segment(id).baseNames[id & SEGMENT_MASK]; }
+    String title(int id) { return segment(id).titles[id & SEGMENT_MASK]; }
+    String artist(int id) { return segment(id).artists[id & SEGMENT_MASK]; }
+    String difficulty(int id) { return segment(id).difficulties[id & SEGMENT_MASK]; }
+    String mapper(int id) { return segment(id).mappers[id & SEGMENT_MASK]; }
+    String audioPath(int id) { return segment(id).audioPaths[id & SEGMENT_MASK]; }
+    String videoPath(int id) { return segment(id).videoPaths[id & SEGMENT_MASK]; }
+    long videoOffset(int id) { return segment(id).videoOffsets[id & SEGMENT_MASK]; }
+    String backgroundPath(int id) { return segment(id).backgroundPaths[id & SEGMENT_MASK]; }
+    String baseFolder(int id) { return segment(id).baseFolders[id & SEGMENT_MASK]; }
+    String beatmapId(int id) { return segment(id).beatmapIds[id & SEGMENT_MASK]; }
+    String beatmapSetId(int id) { return segment(id).beatmapSetIds[id & SEGMENT_MASK]; }
+    String source(int id) { return segment(id).sources[id & SEGMENT_MASK]; }
+    String searchKey(int id) { return segment(id).searchKeys[id & SEGMENT_MASK]; }
+    int occurrence(int id) { return segment(id).occurrences[id & SEGMENT_MASK]; }
+    boolean showDifficulty(int id) { return segment(id).showDifficulty[id & SEGMENT_MASK]; }
+    boolean mapperShown(int id) { return segment(id).mapperShown[id & SEGMENT_MASK]; }
+
+    @SuppressWarnings("unchecked")
+    List<String> tags(int id) {
+        return (List<String>) segment(id).tags[id & SEGMENT_MASK];
+    }
+
+    @SuppressWarnings("unchecked")
+    List<String> creators(int id) {
+        return (List<String>) segment(id).creators[id & SEGMENT_MASK];
+    }
+
+    static final class Segment {
+        final String[] displayNames;
+        final String[] songKeys;
+        final String[] baseNames;
+        final String[] titles;
+        final String[] artists;
+        final String[] difficulties;
+        final String[] mappers;
+        final String[] audioPaths;
+        final String[] videoPaths;
+        final long[] videoOffsets;
+        final String[] backgroundPaths;
+        final String[] baseFolders;
+        final Object[] tags;
+        final Object[] creators;
+        final String[] beatmapIds;
+        final String[] beatmapSetIds;
+        final String[] sources;
+        final String[] searchKeys;
+        final int[] occurrences;
+        final boolean[] showDifficulty;
+        final boolean[] mapperShown;
+        final boolean[] alive;
+
+        Segment() {
+            displayNames = new String[SEGMENT_SIZE];
+            songKeys = new String[SEGMENT_SIZE];
+            baseNames = new String[SEGMENT_SIZE];
+            titles = new String[SEGMENT_SIZE];
+            artists = new String[SEGMENT_SIZE];
+            difficulties = new String[SEGMENT_SIZE];
+            mappers = new String[SEGMENT_SIZE];
+            audioPaths = new String[SEGMENT_SIZE];
+            videoPaths = new String[SEGMENT_SIZE];
+            videoOffsets = new long[SEGMENT_SIZE];
+            backgroundPaths = new String[SEGMENT_SIZE];
+            baseFolders = new String[SEGMENT_SIZE];
+            tags = new Object[SEGMENT_SIZE];
+            creators = new Object[SEGMENT_SIZE];
+            beatmapIds = new String[SEGMENT_SIZE];
+            beatmapSetIds = new String[SEGMENT_SIZE];
+            sources = new String[SEGMENT_SIZE];
+            searchKeys = new String[SEGMENT_SIZE];
+            occurrences = new int[SEGMENT_SIZE];
+            showDifficulty = new boolean[SEGMENT_SIZE];
+            mapperShown = new boolean[SEGMENT_SIZE];
+            alive = new boolean[SEGMENT_SIZE];
+        }
+
+        Segment(Segment other) {
+            displayNames = other.displayNames.clone();
+            songKeys = other.songKeys.clone();
+            baseNames = other.baseNames.clone();
+            titles = other.titles.clone();
+            artists = other.artists.clone();
+            difficulties = other.difficulties.clone();
+            mappers = other.mappers.clone();
+            audioPaths = other.audioPaths.clone();
+            videoPaths = other.videoPaths.clone();
+            videoOffsets = other.videoOffsets.clone();
+            backgroundPaths = other.backgroundPaths.clone();
+            baseFolders = other.baseFolders.clone();
+            tags = other.tags.clone();
+            creators = other.creators.clone();
+            beatmapIds = other.beatmapIds.clone();
+            beatmapSetIds = other.beatmapSetIds.clone();
+            sources = other.sources.clone();
+            searchKeys = other.searchKeys.clone();
+            occurrences = other.occurrences.clone();
+            showDifficulty = other.showDifficulty.clone();
+            mapperShown = other.mapperShown.clone();
+            alive = other.alive.clone();
+        }
+
+        void copyRow(int from, Segment target, int to) {
+            target.displayNames[to] = displayNames[from];
+            target.songKeys[to] = songKeys[from];
+            target.baseNames[to] = baseNames[from];
+            target.titles[to] = titles[from];
+            target.artists[to] = artists[from];
+            target.difficulties[to] = difficulties[from];
+            target.mappers[to] = mappers[from];
+            target.audioPaths[to] = audioPaths[from];
+            target.videoPaths[to] = videoPaths[from];
+            target.videoOffsets[to] = videoOffsets[from];
+            target.backgroundPaths[to] = backgroundPaths[from];
+            target.baseFolders[to] = baseFolders[from];
+            target.tags[to] = tags[from];
+            target.creators[to] = creators[from];
+            target.beatmapIds[to] = beatmapIds[from];
+            target.beatmapSetIds[to] = beatmapSetIds[from];
+            target.sources[to] = sources[from];
+            target.searchKeys[to] = searchKeys[from];
+            target.occurrences[to] = occurrences[from];
+            target.showDifficulty[to] = showDifficulty[from];
+            target.mapperShown[to] = mapperShown[from];
+            target.alive[to] = alive[from];
+        }
+
+        void clearRow(int index) {
+            displayNames[index] = null;
+            songKeys[index] = null;
+            baseNames[index] = null;
+            titles[index] = null;
+            artists[index] = null;
+            difficulties[index] = null;
+            mappers[index] = null;
+            audioPaths[index] = null;
+            videoPaths[index] = null;
+            videoOffsets[index] = 0;
+            backgroundPaths[index] = null;
+            baseFolders[index] = null;
+            tags[index] = null;
+            creators[index] = null;
+            beatmapIds[index] = null;
+            beatmapSetIds[index] = null;
+            sources[index] = null;
+            searchKeys[index] = null;
+            occurrences[index] = 0;
+            showDifficulty[index] = false;
+            mapperShown[index] = false;
+            alive[index] = false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.osuplayer.playback;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+final class FuzzyTermDictionary {
+
+    static final int MAX_EDIT_DISTANCE = 1;
+    static final int MIN_TOKEN_LENGTH = 4;
+
+    private static final int MIN_WORD_LENGTH = MIN_TOKEN_LENGTH - MAX_EDIT_DISTANCE;
+    private static final int MAX_WORD_LENGTH = 32;
+    private static final int PENDING_REBUILD_THRESHOLD = 2048;
+
+    private long[] deletes = new long[0];
+    private int indexedWords;
+
+    synchronized void clear() {
+        deletes = new long[0];
+        indexedWords = 0;
+    }
+
+    // Shared by every published snapshot; each passes its own word list, which may be
+    // shorter than the one the dictionary was last built from.
+    synchronized void forEachMatch(String token, List<String> words, IntConsumer wordIdConsumer) {
+        if (token.length() < MIN_TOKEN_LENGTH || token.length() > MAX_WORD_LENGTH + MAX_EDIT_DISTANCE) {
+            return;
+        }
+        ensureBuilt(words);
+        lookup(token, token, words, wordIdConsumer);
+        for (int i = 0; i < token.length(); i++) {
+            lookup(token, deleteAt(token, i), words, wordIdConsumer);
+        }
+        for (int wordId = indexedWords; wordId < words.size(); wordId++) {
+            if (withinDistance(token, words.get(wordId))) {
+                wordIdConsumer.accept(wordId);
+            }
+        }
+    }
+
+    static boolean withinDistance(String token, String word) {
+        if (token.length() < MIN_TOKEN_LENGTH) {
+            return false;
+        }
+        return Math.abs(token.length() - word.length()) <= MAX_EDIT_DISTANCE
+            && editDistance(token, word, MAX_EDIT_DISTANCE) <= MAX_EDIT_DISTANCE;
+    }
+
+    private void lookup(String token, String variant, List<String> words, IntConsumer wordIdConsumer) {
+        long hash = variant.hashCode();
+        int index = lowerBound(hash);
+        while (index < deletes.length && (deletes[index] >> 32) == hash) {
+            int wordId = (int) deletes[index];
+            if (wordId < words.size() && withinDistance(token, words.get(wordId))) {
+                wordIdConsumer.accept(wordId);
+            }
+            index++;
+        }
+    }
+
+    private int lowerBound(long hash) {
+        long key = hash << 32;
+        int low = 0;
+        int high = deletes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (deletes[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureBuilt(List<String> words) {
+        int pending = words.size() - indexedWords;
+        if (pending == 0 || (indexedWords > 0 && pending < PENDING_REBUILD_THRESHOLD)) {
+            return;
+        }
+        int count = 0;
+        for (String word : words) {
+            if (indexable(word)) {
+                count += word.length() + 1;
+            }
+        }
+        long[] entries = new long[count];
+        int position = 0;
+        for (int wordId = 0; wordId < words.size(); wordId++) {
+            String word = words.get(wordId);
+            if (!indexable(word)) {
+                continue;
+            }
+            entries[position++] = entry(word, wordId);
+            for (int i = 0; i < word.length(); i++) {
+                entries[position++] = entry(deleteAt(word, i), wordId);
+            }
+        }
+        Arrays.sort(entries);
+        deletes = entries;
+        indexedWords = words.size();
+    }
+
+    private static boolean indexable(String word) {
+        return word.length() >= MIN_WORD_LENGTH && word.length() <= MAX_WORD_LENGTH;
+    }
+
+    private static long entry(String variant, int wordId) {
+        return ((long) variant.hashCode() << 32) | (wordId & 0xFFFFFFFFL);
+    }
+
+    private static String deleteAt(String text, int index) {
+        return text.substring(0, index) + text.substring(index + 1);
+    }
+
+    private static int editDistance(String a, String b, int limit) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+}
@@ -1,51 +1,87 @@
 package com.osuplayer.playback;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.osuplayer.beatmaps.BeatmapFolderListing;
 import com.osuplayer.beatmaps.BeatmapParser;
+import com.osuplayer.beatmaps.OsuDatabase;
 import com.osuplayer.config.ConfigManager;
 import com.osuplayer.config.SongLibraryCache;
 import com.osuplayer.history.HistoryManager;
 import com.osuplayer.lang.I18n;
+import com.osuplayer.search.RelevanceScoring;
 
 import javafx.scene.image.Image;
 
-public class MusicManager {
+public class MusicManager implements SongKeyResolver {
 
     private static final double FOLDER_SCAN_WEIGHT = 0.85;
     private static final double ENTRY_INTEGRATION_WEIGHT = 1.0 - FOLDER_SCAN_WEIGHT;
+    private static final int PROGRESSIVE_FIRST_BATCH_FOLDERS = 16;
+    private static final int PROGRESSIVE_BATCH_FOLDERS = 256;
+    private static final int RECENT_FOLDER_HINTS = 50;
+    private static final long MEDIA_UNRESOLVED = Long.MIN_VALUE;
+    private static final int MEDIA_BATCH_FOLDERS = 256;
+    private static final LibraryDelta NO_CHANGES = new LibraryDelta(List.of(), List.of());
+    private static final int TITLE_WEIGHT = 80;
+    private static final int ARTIST_WEIGHT = 60;
+    private static final int MAPPER_WEIGHT = 45;
+    private static final int TAG_WEIGHT = 20;
+    private static final int EXACT_TITLE_BONUS = 100;
+    private static final int TITLE_PREFIX_BONUS = 50;
+    private static final int RECENCY_WEIGHT = 30;
+    private static final int PLAY_COUNT_WEIGHT = 3;
+    private static final int MAX_COUNTED_PLAYS = 10;
+    private static final Comparator<RankedSong> RANKED_ORDER = Comparator
+        .comparingInt(RankedSong::score)
+        .thenComparing(RankedSong::id, Comparator.reverseOrder());
 
     private final ConfigManager configManager;
-    private final Map<String, String> songs = new LinkedHashMap<>();
+    private final SongCatalog catalog = new SongCatalog();
+    private SongSearchIndex searchIndex = new SongSearchIndex();
+    private SongFieldIndex fieldIndex = new SongFieldIndex();
+    private volatile Library library = new Library(catalog.publish(), searchIndex.publish(), fieldIndex.publish(), 0, 0L);
     private String lastFolderPath;
+    private long libraryEpoch;
     private FolderSnapshot lastLoadedSnapshot;
+    private SongLibraryCache pendingRevalidation;
+    private long preparedCacheSequence;
+    private final Object cacheWriteLock = new Object();
+    private long savedCacheSequence;
+    private final Map<String, FolderMedia> folderMediaFallbacks = new ConcurrentHashMap<>();
 
-    private final Map<String, String> songBaseFolders = new HashMap<>();
-    private final Map<String, List<String>> songCreators = new HashMap<>();
-    private final Map<String, List<String>> songTags = new HashMap<>();
-    private final Map<String, String> songVideoPaths = new HashMap<>();
-    private final Map<String, Long> songVideoOffsets = new HashMap<>();
-    private final Map<String, String> songBackgroundPaths = new HashMap<>();
-    private final Map<String, SongMetadataDetails> songMetadataDetails = new HashMap<>();
-    private final Map<String, SongDisplayParts> songDisplayParts = new HashMap<>();
     private final Map<String, Integer> baseDisplayCounts = new HashMap<>();
     private final Map<String, Integer> canonicalDisplayCounters = new HashMap<>();
-    private final Map<String, String> displayNameToBaseDisplay = new HashMap<>();
-    private final Map<String, String> displayNameToCanonicalKey = new HashMap<>();
     private final Map<String, Integer> folderDifficultyCounts = new HashMap<>();
     private int totalDifficultyCount;
 
     private final HistoryManager historyManager = new HistoryManager();
     private final BeatmapParser beatmapParser = new BeatmapParser();
+    private final BeatmapHashIndex beatmapHashIndex = new BeatmapHashIndex(beatmapParser);
 
     public MusicManager(ConfigManager configManager) {
         this.configManager = configManager;
@@ -55,22 +91,20 @@ public class MusicManager {
         void onProgress(double progress, String currentItem);
     }
 
+    public interface LibraryBatchCallback {
+        void onBatchPublished(List<String> addedSongs);
+    }
+
     private void resetLibraryState() {
-        songs.clear();
-        songBaseFolders.clear();
-        songTags.clear();
-        songCreators.clear();
-        songVideoPaths.clear();
-        songBackgroundPaths.clear();
-        songMetadataDetails.clear();
-        songVideoOffsets.clear();
-        songDisplayParts.clear();
+        libraryEpoch++;
+        catalog.clear();
+        searchIndex = new SongSearchIndex();
+        fieldIndex = new SongFieldIndex();
         baseDisplayCounts.clear();
         canonicalDisplayCounters.clear();
-        displayNameToBaseDisplay.clear();
-        displayNameToCanonicalKey.clear();
         folderDifficultyCounts.clear();
         totalDifficultyCount = 0;
+        folderMediaFallbacks.clear();
     }
 
     public Map<String, String> loadSongsFromFolder(File folder) {
@@ -78,19 +112,26 @@ public class MusicManager {
     }
 
     public Map<String, String> loadSongsFromFolder(File folder, LoadingProgressCallback progressCallback) {
+        return loadSongsFromFolder(folder, progressCallback, null);
+    }
+
+    public synchronized Map<String, String> loadSongsFromFolder(File folder,
+                                                                LoadingProgressCallback progressCallback,
+                                                                LibraryBatchCallback batchCallback) {
+        pendingRevalidation = null;
         if (folder == null || !folder.exists() || !folder.isDirectory()) {
             resetLibraryState();
             lastLoadedSnapshot = null;
             lastFolderPath = null;
-            return songs;
+            return publishLibrary();
         }
 
         String normalizedFolderPath = normalizeFolderPath(folder.getAbsolutePath());
         FolderSnapshot snapshot = captureFolderSnapshot(folder);
 
-        if (lastLoadedSnapshot != null && lastLoadedSnapshot.equals(snapshot) && !songs.isEmpty()) {
+        if (lastLoadedSnapshot != null && lastLoadedSnapshot.equals(snapshot) && catalog.size() > 0) {
             notifyProgress(progressCallback, 1.0, I18n.tr("Completado"));
-            return songs;
+            return publishLibrary();
         }
 
         SongLibraryCache cache = configManager == null ? null : configManager.loadSongLibraryCache();
@@ -103,74 +144,621 @@ public class MusicManager {
             lastLoadedSnapshot = snapshot;
             lastFolderPath = normalizedFolderPath;
             notifyProgress(progressCallback, 1.0, I18n.tr("Completado"));
-            return songs;
+            return publishLibrary();
         }
 
         resetLibraryState();
 
         File[] beatmapFolders = folder.listFiles(File::isDirectory);
-        int totalFolders = beatmapFolders == null ? 0 : beatmapFolders.length;
         if (beatmapFolders == null) {
             notifyProgress(progressCallback, 1.0, "");
-            return songs;
+            return publishLibrary();
         }
 
         List<SongEntry> finalEntries = new ArrayList<>();
-        int processedFolders = 0;
-
-        for (File beatmapFolder : beatmapFolders) {
-            processedFolders++;
-            double folderProgress = totalFolders <= 0
-                ? 0
-                : (processedFolders / (double) totalFolders) * FOLDER_SCAN_WEIGHT;
-            notifyProgress(progressCallback, folderProgress, I18n.tr("Carpeta") + ": " + beatmapFolder.getName());
-            List<File> osuFiles = beatmapParser.listOsuFiles(beatmapFolder);
-            if (osuFiles.isEmpty()) {
+        boolean coldScan = cache == null || !cache.isForFolder(normalizedFolderPath);
+        File osuDatabaseFile = coldScan && configManager != null && configManager.isOsuDatabaseImportEnabled()
+            ? OsuDatabase.locate(folder)
+            : null;
+        OsuDatabase osuDatabase = osuDatabaseFile == null ? null : readOsuDatabase(osuDatabaseFile, progressCallback);
+        boolean progressive = coldScan && osuDatabase == null && batchCallback != null;
+        FolderScanResult[] scanResults;
+        if (!coldScan) {
+            scanResults = rescanChangedFolders(beatmapFolders, cache, cache.diff(snapshot.folderModifiedTimes()), progressCallback);
+        } else if (osuDatabase != null) {
+            scanResults = importFromOsuDatabase(beatmapFolders, snapshot.folderModifiedTimes(),
+                osuDatabase, osuDatabaseFile.lastModified(), progressCallback);
+        } else if (progressive) {
+            scanResults = scanBeatmapFoldersProgressively(beatmapFolders, progressCallback, batchCallback);
+        } else {
+            scanResults = scanBeatmapFolders(beatmapFolders, progressCallback);
+        }
+
+        // Progressive batches name songs as they arrive; only a base label collision can change a name afterwards.
+        boolean provisionalNamesFinal = progressive && !hasCollidingBaseLabels();
+        if (progressive && !provisionalNamesFinal) {
+            resetLibraryState();
+        }
+
+        for (FolderScanResult result : scanResults) {
+            if (result == null || result.difficultyCount() <= 0) {
                 continue;
             }
-            totalDifficultyCount += osuFiles.size();
-            String normalizedFolder = normalizeFolderPath(beatmapFolder.getAbsolutePath());
-            folderDifficultyCounts.put(normalizedFolder, osuFiles.size());
-            finalEntries.addAll(buildEntriesFromOsuFiles(beatmapFolder, osuFiles));
+            totalDifficultyCount += result.difficultyCount();
+            folderDifficultyCounts.put(result.normalizedFolder(), result.difficultyCount());
+            finalEntries.addAll(result.entries());
         }
 
-        integrateEntries(finalEntries, progressCallback, true);
+        if (!provisionalNamesFinal) {
+            integrateEntries(finalEntries, progressCallback, true);
+        }
         notifyProgress(progressCallback, 1.0, I18n.tr("Completado"));
         lastLoadedSnapshot = snapshot;
         lastFolderPath = normalizedFolderPath;
+        Map<String, String> published = publishLibrary();
         persistLibraryCache(normalizedFolderPath, snapshot, finalEntries);
-        return songs;
+        return published;
+    }
+
+    public synchronized Map<String, String> loadCachedLibrary(File folder) {
+        if (folder == null || configManager == null) {
+            return null;
+        }
+        String normalizedFolderPath = normalizeFolderPath(folder.getAbsolutePath());
+        SongLibraryCache cache = configManager.loadSongLibraryCache();
+        if (cache == null || !cache.isForFolder(normalizedFolderPath) || cache.entries().isEmpty()) {
+            return null;
+        }
+        resetLibraryState();
+        applyCachedLibrary(cache, null);
+        folderDifficultyCounts.putAll(cache.folderDifficultyCounts());
+        totalDifficultyCount = cache.totalDifficultyCount();
+        lastLoadedSnapshot = null;
+        lastFolderPath = normalizedFolderPath;
+        pendingRevalidation = cache;
+        return publishLibrary();
+    }
+
+    public synchronized boolean needsRevalidation() {
+        return pendingRevalidation != null;
+    }
+
+    public LibraryDelta revalidateCachedLibrary() {
+        SongLibraryCache baseline;
+        String folderPath;
+        synchronized (this) {
+            baseline = pendingRevalidation;
+            folderPath = lastFolderPath;
+        }
+        if (baseline == null || folderPath == null) {
+            return NO_CHANGES;
+        }
+        File folder = new File(folderPath);
+        if (!folder.isDirectory()) {
+            return NO_CHANGES;
+        }
+        FolderSnapshot snapshot = captureFolderSnapshot(folder);
+        SongLibraryCache.FolderDiff diff = baseline.diff(snapshot.folderModifiedTimes());
+
+        List<Path> updatedFolders = new ArrayList<>(diff.added().size() + diff.modified().size());
+        List<Path> removedFolders = new ArrayList<>(diff.removed().size());
+        try {
+            for (String path : diff.added()) {
+                updatedFolders.add(Path.of(path));
+            }
+            for (String path : diff.modified()) {
+                updatedFolders.add(Path.of(path));
+            }
+            for (String path : diff.removed()) {
+                removedFolders.add(Path.of(path));
+            }
+        } catch (InvalidPathException ex) {
+            System.err.println("Error revalidando la biblioteca: " + ex.getMessage());
+            synchronized (this) {
+                if (pendingRevalidation == baseline) {
+                    pendingRevalidation = null;
+                }
+            }
+            return NO_CHANGES;
+        }
+
+        // Parsing and the cache write stay outside the lock; it is only held to apply and publish the results.
+        FolderScanResult[] scanned = scanBeatmapFolders(toFiles(updatedFolders), null);
+        LibraryDelta delta = NO_CHANGES;
+        PendingLibraryCache cache = null;
+        synchronized (this) {
+            if (pendingRevalidation != baseline) {
+                return NO_CHANGES;
+            }
+            pendingRevalidation = null;
+            lastLoadedSnapshot = snapshot;
+            if (!diff.isEmpty()) {
+                List<String> added = new ArrayList<>();
+                List<String> removed = new ArrayList<>();
+                delta = applyFolderChangesInternal(updatedFolders, scanned, removedFolders, added, removed);
+                publishLibrary();
+            }
+            if (!diff.isEmpty() || baseline.rootLastModified() != snapshot.rootLastModified()) {
+                cache = prepareLibraryCache(folderPath, snapshot, exportCurrentEntriesForCache());
+            }
+        }
+        saveLibraryCache(cache);
+        return delta;
+    }
+
+    public boolean resolvePendingMedia() {
+        long epoch;
+        String folderPath;
+        Map<String, List<String>> songsByFolder = new LinkedHashMap<>();
+        synchronized (this) {
+            epoch = libraryEpoch;
+            folderPath = lastFolderPath;
+            for (int id = catalog.firstId(); id >= 0; id = catalog.nextId(id)) {
+                String baseFolder = catalog.baseFolder(id);
+                if (baseFolder != null && catalog.videoOffset(id) == MEDIA_UNRESOLVED) {
+                    songsByFolder.computeIfAbsent(baseFolder, key -> new ArrayList<>()).add(catalog.displayName(id));
+                }
+            }
+        }
+        if (songsByFolder.isEmpty()) {
+            return false;
+        }
+
+        // Rows imported from osu!.db carry no media columns; until they are filled in, has:video and
+        // has:bg would not see them, so the folders are parsed here, off the lock, and the flags re-indexed.
+        List<String> folders = new ArrayList<>(songsByFolder.keySet());
+        ExecutorService executor = Executors.newFixedThreadPool(resolveScanParallelism(folders.size()), runnable -> {
+            Thread t = new Thread(runnable, "osu-media-resolver");
+            t.setDaemon(true);
+            return t;
+        });
+        boolean changed = false;
+        PendingLibraryCache cache = null;
+        try {
+            for (int start = 0; start < folders.size(); start += MEDIA_BATCH_FOLDERS) {
+                List<String> batch = folders.subList(start, Math.min(folders.size(), start + MEDIA_BATCH_FOLDERS));
+                List<Future<FolderMedia>> futures = new ArrayList<>(batch.size());
+                for (String folder : batch) {
+                    futures.add(executor.submit(() -> resolveFolderMedia(folder)));
+                }
+                Map<String, FolderMedia> resolved = new HashMap<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    FolderMedia media = awaitFolderMedia(futures.get(i), batch.get(i));
+                    if (media != null) {
+                        resolved.put(batch.get(i), media);
+                    }
+                }
+                synchronized (this) {
+                    if (libraryEpoch != epoch) {
+                        return changed;
+                    }
+                    for (Map.Entry<String, FolderMedia> entry : resolved.entrySet()) {
+                        FolderMedia media = entry.getValue();
+                        for (String song : songsByFolder.get(entry.getKey())) {
+                            Integer id = catalog.lookup(song);
+                            if (id == null || catalog.videoOffset(id) != MEDIA_UNRESOLVED) {
+                                continue;
+                            }
+                            catalog.setMedia(id, media.videoPath(), media.videoOffsetMillis(), media.backgroundPath());
+                            fieldIndex.updateFlags(id, catalog);
+                            changed = true;
+                        }
+                        folderMediaFallbacks.remove(entry.getKey());
+                    }
+                    publishLibrary();
+                }
+            }
+            synchronized (this) {
+                if (changed && libraryEpoch == epoch && lastLoadedSnapshot != null) {
+                    cache = prepareLibraryCache(folderPath, lastLoadedSnapshot, exportCurrentEntriesForCache());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        saveLibraryCache(cache);
+        return changed;
+    }
+
+    private FolderMedia awaitFolderMedia(Future<FolderMedia> future, String baseFolder) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            System.err.println("Error leyendo los recursos de " + baseFolder + ": " + ex.getCause());
+            return null;
+        }
+    }
+
+    private FolderScanResult[] scanBeatmapFolders(File[] beatmapFolders, LoadingProgressCallback progressCallback) {
+        return scanBeatmapFolders(beatmapFolders, progressCallback, null);
+    }
+
+    private FolderScanResult[] scanBeatmapFoldersProgressively(File[] beatmapFolders,
+                                                               LoadingProgressCallback progressCallback,
+                                                               LibraryBatchCallback batchCallback) {
+        Integer[] order = recentFirstOrder(beatmapFolders);
+        File[] ordered = new File[beatmapFolders.length];
+        for (int i = 0; i < order.length; i++) {
+            ordered[i] = beatmapFolders[order[i]];
+        }
+        FolderScanResult[] scanned = scanBeatmapFolders(ordered, progressCallback, new ProgressivePublisher(batchCallback));
+        FolderScanResult[] results = new FolderScanResult[beatmapFolders.length];
+        for (int i = 0; i < order.length; i++) {
+            results[order[i]] = scanned[i];
+        }
+        return results;
+    }
+
+    private FolderScanResult[] scanBeatmapFolders(File[] beatmapFolders,
+                                                  LoadingProgressCallback progressCallback,
+                                                  ProgressivePublisher publisher) {
+        int totalFolders = beatmapFolders.length;
+        FolderScanResult[] results = new FolderScanResult[totalFolders];
+        AtomicInteger processedFolders = new AtomicInteger();
+        int parallelism = resolveScanParallelism(totalFolders);
+
+        if (parallelism <= 1) {
+            for (int i = 0; i < totalFolders; i++) {
+                results[i] = scanBeatmapFolder(beatmapFolders[i], totalFolders, processedFolders, progressCallback);
+                if (publisher != null) {
+                    publisher.accept(results[i]);
+                }
+            }
+            if (publisher != null) {
+                publisher.flush();
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread t = new Thread(runnable, "osu-song-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<FolderScanResult>> futures = new ArrayList<>(totalFolders);
+            for (File beatmapFolder : beatmapFolders) {
+                futures.add(executor.submit(() ->
+                    scanBeatmapFolder(beatmapFolder, totalFolders, processedFolders, progressCallback)));
+            }
+            for (int i = 0; i < totalFolders; i++) {
+                results[i] = awaitScanResult(futures.get(i), beatmapFolders[i]);
+                if (publisher != null) {
+                    publisher.accept(results[i]);
+                }
+            }
+            if (publisher != null) {
+                publisher.flush();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private Integer[] recentFirstOrder(File[] beatmapFolders) {
+        Integer[] order = new Integer[beatmapFolders.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        List<List<String>> recentSongs = recentSongTokens();
+        // The history itself is only restored once the library has loaded, so a cold scan
+        // leans on the set IDs stored with it, which osu! puts at the start of each folder name.
+        List<String> recentSets = configManager == null ? List.of() : configManager.getRecentBeatmapSets();
+        if (recentSongs.isEmpty() && recentSets.isEmpty()) {
+            return order;
+        }
+        int[] rank = new int[beatmapFolders.length];
+        for (int i = 0; i < beatmapFolders.length; i++) {
+            String folderName = beatmapFolders[i].getName();
+            rank[i] = Math.min(recencyRank(folderName, recentSongs), setRank(folderName, recentSets));
+        }
+        Arrays.sort(order, Comparator.comparingInt(index -> rank[index]));
+        return order;
+    }
+
+    private List<List<String>> recentSongTokens() {
+        Set<String> recent = new LinkedHashSet<>();
+        String lastSong = configManager == null ? null : configManager.getLastSong();
+        if (lastSong != null && !lastSong.isBlank()) {
+            recent.add(lastSong);
+        }
+        List<String> history = historyManager.getHistory();
+        for (int i = history.size() - 1; i >= 0 && recent.size() < RECENT_FOLDER_HINTS; i--) {
+            recent.add(history.get(i));
+        }
+        List<List<String>> tokens = new ArrayList<>(recent.size());
+        for (String song : recent) {
+            List<String> songTokens = SongSearchIndex.tokenize(song);
+            if (!songTokens.isEmpty()) {
+                tokens.add(songTokens);
+            }
+        }
+        return tokens;
+    }
+
+    private int setRank(String folderName, List<String> recentSets) {
+        int end = 0;
+        while (end < folderName.length() && Character.isDigit(folderName.charAt(end))) {
+            end++;
+        }
+        if (end == 0 || (end < folderName.length() && !Character.isWhitespace(folderName.charAt(end)))) {
+            return Integer.MAX_VALUE;
+        }
+        int rank = recentSets.indexOf(folderName.substring(0, end));
+        return rank < 0 ? Integer.MAX_VALUE : rank;
+    }
+
+    private int recencyRank(String folderName, List<List<String>> recentSongs) {
+        // osu! names set folders "<setId> <artist> - <title>", and display names start with "<artist> - <title>".
+        List<String> folderTokens = SongSearchIndex.tokenize(folderName.replaceFirst("^\\d+\\s+", ""));
+        if (folderTokens.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < recentSongs.size(); i++) {
+            List<String> songTokens = recentSongs.get(i);
+            if (songTokens.size() >= folderTokens.size()
+                    && songTokens.subList(0, folderTokens.size()).equals(folderTokens)) {
+                return i;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private boolean hasCollidingBaseLabels() {
+        for (int count : baseDisplayCounts.values()) {
+            if (count > 1) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    public List<String> importBeatmapFolder(File beatmapFolder) {
-        if (beatmapFolder == null || !beatmapFolder.isDirectory()) {
+    private FolderScanResult[] rescanChangedFolders(File[] beatmapFolders,
+                                                    SongLibraryCache cache,
+                                                    SongLibraryCache.FolderDiff diff,
+                                                    LoadingProgressCallback progressCallback) {
+        Map<String, List<SongLibraryCache.CachedSongEntry>> cachedByFolder = cache.entriesByFolder();
+        FolderScanResult[] results = new FolderScanResult[beatmapFolders.length];
+        List<Integer> staleIndexes = new ArrayList<>();
+
+        for (int i = 0; i < beatmapFolders.length; i++) {
+            String normalizedFolder = normalizeFolderPath(beatmapFolders[i].getAbsolutePath());
+            if (diff.requiresRescan(normalizedFolder)) {
+                staleIndexes.add(i);
+                continue;
+            }
+            Integer difficultyCount = cache.folderDifficultyCounts().get(normalizedFolder);
+            if (difficultyCount == null) {
+                continue;
+            }
+            List<SongEntry> reused = new ArrayList<>();
+            for (SongLibraryCache.CachedSongEntry cached : cachedByFolder.getOrDefault(normalizedFolder, List.of())) {
+                reused.add(toSongEntry(cached));
+            }
+            results[i] = new FolderScanResult(normalizedFolder, difficultyCount, reused);
+        }
+
+        scanStaleFolders(beatmapFolders, staleIndexes, results, progressCallback);
+        return results;
+    }
+
+    private OsuDatabase readOsuDatabase(File databaseFile, LoadingProgressCallback progressCallback) {
+        notifyProgress(progressCallback, 0, OsuDatabase.FILE_NAME);
+        try {
+            return OsuDatabase.read(databaseFile.toPath());
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("No se pudo leer " + databaseFile.getAbsolutePath() + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private FolderScanResult[] importFromOsuDatabase(File[] beatmapFolders,
+                                                     Map<String, Long> folderModifiedTimes,
+                                                     OsuDatabase database,
+                                                     long databaseModified,
+                                                     LoadingProgressCallback progressCallback) {
+        Map<String, List<OsuDatabase.Beatmap>> beatmapsByFolder = database.beatmapsByFolder();
+        FolderScanResult[] results = new FolderScanResult[beatmapFolders.length];
+        List<Integer> staleIndexes = new ArrayList<>();
+
+        for (int i = 0; i < beatmapFolders.length; i++) {
+            File beatmapFolder = beatmapFolders[i];
+            String normalizedFolder = normalizeFolderPath(beatmapFolder.getAbsolutePath());
+            List<OsuDatabase.Beatmap> beatmaps = beatmapsByFolder.get(beatmapFolder.getName().toLowerCase(Locale.ROOT));
+            Long folderModified = folderModifiedTimes.get(normalizedFolder);
+            if (beatmaps == null || folderModified == null || folderModified > databaseModified) {
+                staleIndexes.add(i);
+                continue;
+            }
+            // One directory read per folder still beats parsing its .osu files, and lets rows whose
+            // audio is gone or named with a different case resolve like a regular scan would.
+            BeatmapFolderListing listing = BeatmapFolderListing.read(beatmapFolder);
+            Map<File, BeatmapParser.BeatmapFileInfo> infoByFile = new LinkedHashMap<>();
+            for (OsuDatabase.Beatmap beatmap : beatmaps) {
+                infoByFile.put(new File(beatmapFolder, beatmap.osuFileName()),
+                    new BeatmapParser.BeatmapFileInfo(beatmap.toMetadata(), null, null));
+            }
+            List<SongEntry> entries = buildEntries(beatmapFolder, infoByFile, listing::resolve, false);
+            results[i] = new FolderScanResult(normalizedFolder, beatmaps.size(), entries);
+        }
+
+        scanStaleFolders(beatmapFolders, staleIndexes, results, progressCallback);
+        return results;
+    }
+
+    private void scanStaleFolders(File[] beatmapFolders,
+                                  List<Integer> staleIndexes,
+                                  FolderScanResult[] results,
+                                  LoadingProgressCallback progressCallback) {
+        File[] staleFolders = new File[staleIndexes.size()];
+        for (int i = 0; i < staleFolders.length; i++) {
+            staleFolders[i] = beatmapFolders[staleIndexes.get(i)];
+        }
+        FolderScanResult[] rescanned = scanBeatmapFolders(staleFolders, progressCallback);
+        for (int i = 0; i < rescanned.length; i++) {
+            results[staleIndexes.get(i)] = rescanned[i];
+        }
+    }
+
+    private FolderScanResult scanBeatmapFolder(File beatmapFolder,
+                                               int totalFolders,
+                                               AtomicInteger processedFolders,
+                                               LoadingProgressCallback progressCallback) {
+        int processed = processedFolders.incrementAndGet();
+        double folderProgress = totalFolders <= 0
+            ? 0
+            : (processed / (double) totalFolders) * FOLDER_SCAN_WEIGHT;
+        notifyProgress(progressCallback, folderProgress, I18n.tr("Carpeta") + ": " + beatmapFolder.getName());
+        BeatmapFolderListing listing = BeatmapFolderListing.read(beatmapFolder);
+        if (listing.osuFiles().isEmpty()) {
+            return null;
+        }
+        String normalizedFolder = normalizeFolderPath(beatmapFolder.getAbsolutePath());
+        return new FolderScanResult(normalizedFolder, listing.osuFiles().size(), buildEntriesFromOsuFiles(listing));
+    }
+
+    private FolderScanResult awaitScanResult(Future<FolderScanResult> future, File beatmapFolder) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(I18n.tr("Error al cargar canciones"), ex);
+        } catch (ExecutionException ex) {
+            System.err.println("Error escaneando carpeta " + beatmapFolder.getAbsolutePath() + ": " + ex.getCause());
+            return null;
+        }
+    }
+
+    private int resolveScanParallelism(int totalFolders) {
+        int configured = configManager == null ? 0 : configManager.getLibraryScanParallelism();
+        int parallelism = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(parallelism, totalFolders));
+    }
+
+    public synchronized List<String> importBeatmapFolder(File beatmapFolder) {
+        List<String> added = importBeatmapFolderInternal(beatmapFolder);
+        if (!added.isEmpty()) {
+            publishLibrary();
+            refreshCacheFromCurrentState();
+        }
+        return added;
+    }
+
+    public LibraryDelta applyFolderChanges(List<Path> updatedFolders, List<Path> removedFolders) {
+        List<Path> updated = updatedFolders == null ? List.of() : updatedFolders;
+        long epoch;
+        String folderPath;
+        synchronized (this) {
+            epoch = libraryEpoch;
+            folderPath = lastFolderPath == null || lastFolderPath.isBlank() || !new File(lastFolderPath).isDirectory()
+                ? null
+                : lastFolderPath;
+        }
+        // Parsing is the slow part, so it runs before the lock is taken; only applying the results needs it.
+        FolderScanResult[] scanned = scanBeatmapFolders(toFiles(updated), null);
+        FolderSnapshot snapshot = folderPath == null ? null : captureFolderSnapshot(new File(folderPath));
+        LibraryDelta delta;
+        PendingLibraryCache cache = null;
+        synchronized (this) {
+            if (libraryEpoch != epoch) {
+                // A reload replaced the library while the folders were being parsed and already covers them.
+                return NO_CHANGES;
+            }
+            List<String> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            delta = applyFolderChangesInternal(updated, scanned, removedFolders, added, removed);
+            if (!added.isEmpty() || !removed.isEmpty()) {
+                publishLibrary();
+                if (snapshot != null) {
+                    cache = prepareLibraryCache(folderPath, snapshot, exportCurrentEntriesForCache());
+                    lastLoadedSnapshot = snapshot;
+                }
+            }
+        }
+        saveLibraryCache(cache);
+        return delta;
+    }
+
+    private LibraryDelta applyFolderChangesInternal(List<Path> updatedFolders,
+                                                    FolderScanResult[] scannedFolders,
+                                                    List<Path> removedFolders,
+                                                    List<String> added,
+                                                    List<String> removed) {
+        if (removedFolders != null) {
+            for (Path folder : removedFolders) {
+                removed.addAll(removeSongsByFolderInternal(folder));
+            }
+        }
+        for (int i = 0; i < updatedFolders.size(); i++) {
+            removed.addAll(removeSongsByFolderInternal(updatedFolders.get(i)));
+            added.addAll(insertScannedFolder(scannedFolders[i]));
+        }
+        List<String> stillRemoved = new ArrayList<>(removed);
+        stillRemoved.removeAll(added);
+        List<String> newlyAdded = new ArrayList<>(added);
+        newlyAdded.removeAll(removed);
+        pruneHistoryEntries(Set.copyOf(stillRemoved));
+        return new LibraryDelta(newlyAdded, stillRemoved);
+    }
+
+    private List<String> importBeatmapFolderInternal(File beatmapFolder) {
+        if (beatmapFolder == null) {
             return Collections.emptyList();
         }
-        List<File> osuFiles = beatmapParser.listOsuFiles(beatmapFolder);
+        BeatmapFolderListing listing = BeatmapFolderListing.read(beatmapFolder);
+        List<File> osuFiles = listing.osuFiles();
         if (osuFiles.isEmpty()) {
             return Collections.emptyList();
         }
-        List<SongEntry> entries = buildEntriesFromOsuFiles(beatmapFolder, osuFiles);
+        String normalizedFolder = normalizeFolderPath(beatmapFolder.getAbsolutePath());
+        return insertScannedFolder(new FolderScanResult(normalizedFolder, osuFiles.size(), buildEntriesFromOsuFiles(listing)));
+    }
+
+    private List<String> insertScannedFolder(FolderScanResult result) {
+        if (result == null) {
+            return Collections.emptyList();
+        }
         List<String> added = new ArrayList<>();
-        for (SongEntry entry : entries) {
+        for (SongEntry entry : result.entries()) {
             String displayName = insertSongEntry(entry, true);
             if (displayName != null) {
                 added.add(displayName);
             }
         }
-        String normalizedFolder = normalizeFolderPath(beatmapFolder.getAbsolutePath());
-        folderDifficultyCounts.merge(normalizedFolder, osuFiles.size(), Integer::sum);
-        totalDifficultyCount += osuFiles.size();
-        if (!added.isEmpty()) {
-            refreshCacheFromCurrentState();
-        }
+        folderDifficultyCounts.merge(result.normalizedFolder(), result.difficultyCount(), Integer::sum);
+        totalDifficultyCount += result.difficultyCount();
         return added;
     }
 
-    private List<SongEntry> buildEntriesFromOsuFiles(File beatmapFolder, List<File> osuFiles) {
+    private static File[] toFiles(List<Path> folders) {
+        File[] files = new File[folders.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = folders.get(i).toFile();
+        }
+        return files;
+    }
+
+    private List<SongEntry> buildEntriesFromOsuFiles(BeatmapFolderListing listing) {
+        Map<File, BeatmapParser.BeatmapFileInfo> infoByFile = new LinkedHashMap<>();
+        for (File osuFile : listing.osuFiles()) {
+            infoByFile.put(osuFile, beatmapParser.parseBeatmapFile(osuFile));
+        }
+        return buildEntries(listing.folder(), infoByFile, listing::resolve, true);
+    }
+
+    private List<SongEntry> buildEntries(File beatmapFolder,
+                                         Map<File, BeatmapParser.BeatmapFileInfo> infoByFile,
+                                         Function<String, File> assetResolver,
+                                         boolean mediaResolved) {
+        List<File> osuFiles = new ArrayList<>(infoByFile.keySet());
+        // Directory listings and osu!.db rows come in different orders; the entries built here must not.
+        osuFiles.sort(Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(File::getName));
         Map<File, BeatmapParser.SongMetadata> metadataByFile = new LinkedHashMap<>();
-        for (File osuFile : osuFiles) {
-            metadataByFile.put(osuFile, beatmapParser.parseSongMetadata(osuFile));
+        for (Map.Entry<File, BeatmapParser.BeatmapFileInfo> info : infoByFile.entrySet()) {
+            metadataByFile.put(info.getKey(), info.getValue() == null ? null : info.getValue().metadata());
         }
 
         String folderSetId = extractFolderSetId(beatmapFolder);
@@ -213,42 +801,44 @@ public class MusicManager {
             String beatmapSetId = firstValidId(meta.beatmapSetId, folderSetId);
             String beatmapId = firstValidId(meta.beatmapId, beatmapSetId);
 
-            File audioFile = new File(beatmapFolder, meta.audioFilename);
-            if (!audioFile.exists()) {
+            File audioFile = assetResolver.apply(meta.audioFilename);
+            if (audioFile == null) {
                 continue;
             }
 
-            BeatmapParser.VideoEvent videoEvent = beatmapParser.parseVideoEvent(metadataSource);
+            BeatmapParser.BeatmapFileInfo sourceInfo = infoByFile.get(metadataSource);
+            BeatmapParser.VideoEvent videoEvent = sourceInfo == null ? null : sourceInfo.videoEvent();
             String videoPath = null;
-            long videoOffset = 0;
+            long videoOffset = mediaResolved ? 0 : MEDIA_UNRESOLVED;
             if (videoEvent != null && videoEvent.filename != null) {
-                File videoFile = new File(beatmapFolder, videoEvent.filename);
-                if (videoFile.exists()) {
+                File videoFile = assetResolver.apply(videoEvent.filename);
+                if (videoFile != null) {
                     videoPath = videoFile.getAbsolutePath();
                     videoOffset = videoEvent.offsetMillis;
                 }
             }
 
-            String backgroundFilename = beatmapParser.parseBackground(metadataSource);
+            String backgroundFilename = sourceInfo == null ? null : sourceInfo.backgroundFilename();
             String backgroundPath = null;
-            if (backgroundFilename != null) {
-                File backgroundFile = new File(beatmapFolder, backgroundFilename);
-                if (backgroundFile.exists()) {
-                    backgroundPath = backgroundFile.getAbsolutePath();
-                }
+            File backgroundFile = backgroundFilename == null ? null : assetResolver.apply(backgroundFilename);
+            if (backgroundFile != null) {
+                backgroundPath = backgroundFile.getAbsolutePath();
             }
 
             String mapper = resolveMapper(meta, beatmapFolder);
             String baseName = meta.artist + " - " + meta.title;
+            String difficultyName = sanitizeDifficulty(meta.version);
             List<String> creators = (mapper == null || mapper.isBlank())
                 ? Collections.emptyList()
                 : Collections.singletonList(mapper);
+            String searchKey = buildSearchKey(meta.title, meta.artist, difficultyName, mapper, meta.source,
+                creators, meta.tags, meta.titleUnicode, meta.artistUnicode);
 
             SongVariant variant = new SongVariant(
                 baseName,
                 meta.title,
                 meta.artist,
-                sanitizeDifficulty(meta.version),
+                difficultyName,
                 mapper,
                 audioFile.getAbsolutePath(),
                 videoPath,
@@ -259,6 +849,7 @@ public class MusicManager {
                 beatmapId,
                 beatmapSetId,
                 meta.source,
+                searchKey,
                 videoOffset
             );
 
@@ -273,7 +864,7 @@ public class MusicManager {
             Map<String, SongVariant> mediaRepresentatives = new LinkedHashMap<>();
             for (SongVariant variant : variants) {
                 String mediaKey = buildMediaKey(variant);
-                mediaRepresentatives.putIfAbsent(mediaKey, variant);
+                mediaRepresentatives.merge(mediaKey, variant, MusicManager::preferredRepresentative);
             }
 
             if (mediaRepresentatives.size() == 1) {
@@ -297,8 +888,6 @@ public class MusicManager {
         baseDisplayCounts.clear();
         baseDisplayCounts.putAll(computedBaseCounts);
         canonicalDisplayCounters.clear();
-        displayNameToBaseDisplay.clear();
-        displayNameToCanonicalKey.clear();
 
         int totalEntries = entries.size();
         int processedEntries = 0;
@@ -316,28 +905,56 @@ public class MusicManager {
     private void applyCachedLibrary(SongLibraryCache cache, LoadingProgressCallback progressCallback) {
         List<SongEntry> entries = new ArrayList<>(cache.entries().size());
         for (SongLibraryCache.CachedSongEntry cached : cache.entries()) {
-            entries.add(new SongEntry(
-                cached.baseName(),
-                cached.title(),
-                cached.artist(),
-                cached.difficultyName(),
-                cached.mapper(),
-                cached.audioPath(),
-                cached.videoPath(),
-                cached.videoOffsetMillis(),
-                cached.backgroundPath(),
-                cached.baseFolder(),
-                cached.tags(),
-                cached.creators(),
-                cached.showDifficulty(),
-                cached.beatmapId(),
-                cached.beatmapSetId(),
-                cached.source()
-            ));
+            entries.add(toSongEntry(cached));
         }
         integrateEntries(entries, progressCallback, false);
     }
 
+    private SongEntry toSongEntry(SongLibraryCache.CachedSongEntry cached) {
+        return new SongEntry(
+            cached.baseName(),
+            cached.title(),
+            cached.artist(),
+            cached.difficultyName(),
+            cached.mapper(),
+            cached.audioPath(),
+            cached.videoPath(),
+            cached.videoOffsetMillis(),
+            cached.backgroundPath(),
+            cached.baseFolder(),
+            cached.tags(),
+            cached.creators(),
+            cached.showDifficulty(),
+            cached.beatmapId(),
+            cached.beatmapSetId(),
+            cached.source(),
+            cached.searchKey() != null
+                ? cached.searchKey()
+                : buildSearchKey(cached.title(), cached.artist(), cached.difficultyName(), cached.mapper(),
+                    cached.source(), cached.creators(), cached.tags(), null, null)
+        );
+    }
+
+    private String buildSearchKey(String title, String artist, String difficulty, String mapper, String source,
+                                  List<String> creators, List<String> tags,
+                                  String titleUnicode, String artistUnicode) {
+        List<String> fields = new ArrayList<>();
+        fields.add(title);
+        fields.add(titleUnicode);
+        fields.add(artist);
+        fields.add(artistUnicode);
+        fields.add(mapper);
+        fields.add(difficulty);
+        fields.add(source);
+        if (creators != null) {
+            fields.addAll(creators);
+        }
+        if (tags != null) {
+            fields.addAll(tags);
+        }
+        return SearchKeys.build(fields);
+    }
+
     private String insertSongEntry(SongEntry entry, boolean incrementBaseCounter) {
         if (entry == null) {
             return null;
@@ -353,33 +970,33 @@ public class MusicManager {
         int occurrence = canonicalDisplayCounters.merge(canonicalKey, 1, Integer::sum);
         String finalDisplayName = occurrence > 1 ? canonicalKey + " [" + occurrence + "]" : canonicalKey;
 
-        songs.put(finalDisplayName, entry.audioPath);
-        String normalizedFolder = normalizeFolderPath(entry.baseFolder);
-        songBaseFolders.put(finalDisplayName, normalizedFolder);
-        songTags.put(finalDisplayName, entry.tags == null ? Collections.emptyList() : entry.tags);
-        songCreators.put(finalDisplayName, entry.creators == null ? Collections.emptyList() : entry.creators);
-        songVideoPaths.put(finalDisplayName, entry.videoPath == null ? "" : entry.videoPath);
-        songVideoOffsets.put(finalDisplayName, entry.videoOffsetMillis);
-        songBackgroundPaths.put(finalDisplayName, entry.backgroundPath == null ? "" : entry.backgroundPath);
-        songMetadataDetails.put(finalDisplayName, entry.toMetadataDetails());
-
-        boolean showDifficultySegment = entry.showDifficulty
-            && entry.difficultyName != null
-            && !entry.difficultyName.isBlank();
-        String difficultySegment = showDifficultySegment ? entry.difficultyName.trim() : null;
-        String mapperSegment = duplicated ? entry.mapper : null;
-        String occurrenceSuffixText = occurrence > 1 ? "[" + occurrence + "]" : null;
-        songDisplayParts.put(finalDisplayName, new SongDisplayParts(
-            entry.baseName,
-            difficultySegment,
-            mapperSegment,
-            occurrenceSuffixText));
-
-        displayNameToBaseDisplay.put(finalDisplayName, baseDisplay);
-        displayNameToCanonicalKey.put(finalDisplayName, canonicalKey);
+        int replaced = catalog.idOf(finalDisplayName);
+        if (replaced != SongCatalog.NO_SONG) {
+            searchIndex.remove(replaced);
+            fieldIndex.remove(replaced, catalog);
+        }
+        int id = catalog.add(finalDisplayName, entry, normalizeFolderPath(entry.baseFolder), duplicated, occurrence);
+        searchIndex.add(id, catalog.searchKey(id));
+        fieldIndex.add(id, catalog);
         return finalDisplayName;
     }
 
+    private void rebuildSearchIndex() {
+        searchIndex = new SongSearchIndex();
+        fieldIndex = new SongFieldIndex();
+        for (int id = catalog.firstId(); id >= 0; id = catalog.nextId(id)) {
+            searchIndex.add(id, catalog.searchKey(id));
+            fieldIndex.add(id, catalog);
+        }
+    }
+
+    private Map<String, String> publishLibrary() {
+        Library published = new Library(catalog.publish(), searchIndex.publish(), fieldIndex.publish(),
+            totalDifficultyCount, library.version() + 1);
+        library = published;
+        return published.catalog().asPathMap();
+    }
+
     private void notifyProgress(LoadingProgressCallback callback, double progress, String currentItem) {
         if (callback == null) {
             return;
@@ -389,15 +1006,53 @@ public class MusicManager {
     }
 
     public int getLoadedSongCount() {
-        return songs.size();
+        return library.catalog().size();
     }
 
     public int getLoadedDifficultyCount() {
-        return totalDifficultyCount;
+        return library.difficultyCount();
+    }
+
+    public StringPoolStats getStringPoolStats() {
+        // The pool's maps and counters are concurrent, so this can be read while a scan is running.
+        StringPool.PoolStats stats = catalog.poolStats();
+        return new StringPoolStats(stats.lookups(), stats.hits(), stats.bytesSaved(),
+            stats.uniqueStrings(), stats.uniqueLists());
+    }
+
+    public List<String> getLibrarySongs() {
+        return library.catalog().asNameList();
+    }
+
+    @Override
+    public String songKeyOf(String songName) {
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        return id == SongCatalog.NO_SONG ? null : current.songKey(id);
+    }
+
+    @Override
+    public String songNameOf(String songKey) {
+        if (songKey == null) {
+            return null;
+        }
+        CatalogView current = library.catalog();
+        if (!SongKeys.isKey(songKey)) {
+            return current.contains(songKey) ? songKey : null;
+        }
+        int id = current.idOfKey(songKey);
+        return id == SongCatalog.NO_SONG ? null : current.displayName(id);
+    }
+
+    @Override
+    public long libraryVersion() {
+        return library.version();
     }
 
     public String getSongPath(String songName) {
-        return songs.getOrDefault(songName, null);
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        return id == SongCatalog.NO_SONG ? null : current.audioPath(id);
     }
 
     public void setLastFolderPath(String path) {
@@ -408,40 +1063,118 @@ public class MusicManager {
         return lastFolderPath;
     }
 
+    public Map<String, String> resolveBeatmapHashes(Set<String> beatmapHashes) {
+        String folder = lastFolderPath;
+        File osuDatabase = folder != null && configManager.isOsuDatabaseImportEnabled()
+            ? OsuDatabase.locate(new File(folder))
+            : null;
+        return beatmapHashIndex.resolve(library.catalog(), osuDatabase, beatmapHashes);
+    }
+
     public String getSongBaseFolder(String songName) {
-        return songBaseFolders.getOrDefault(songName, null);
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        return id == SongCatalog.NO_SONG ? null : current.baseFolder(id);
     }
 
     public String getCoverImagePath(String songName) {
-        String stored = songBackgroundPaths.get(songName);
-        if (stored != null) return stored.isEmpty() ? null : stored;
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        if (id == SongCatalog.NO_SONG) return null;
 
-        String baseFolder = getSongBaseFolder(songName);
-        if (baseFolder == null) return null;
-
-        return beatmapParser.findCoverImagePath(new File(baseFolder));
+        String stored = current.backgroundPath(id);
+        if ((stored == null || stored.isEmpty()) && current.videoOffset(id) == MEDIA_UNRESOLVED) {
+            stored = unresolvedFolderMedia(current.baseFolder(id)).backgroundPath();
+        }
+        return stored == null || stored.isEmpty() ? null : stored;
     }
 
     public String getVideoPath(String songName) {
-        String stored = songVideoPaths.get(songName);
-        if (stored != null) return stored.isEmpty() ? null : stored;
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        if (id == SongCatalog.NO_SONG) return null;
 
-        String baseFolder = getSongBaseFolder(songName);
-        if (baseFolder == null) return null;
-
-        return beatmapParser.findVideoPath(new File(baseFolder));
+        String stored = current.videoPath(id);
+        if ((stored == null || stored.isEmpty()) && current.videoOffset(id) == MEDIA_UNRESOLVED) {
+            stored = unresolvedFolderMedia(current.baseFolder(id)).videoPath();
+        }
+        return stored == null || stored.isEmpty() ? null : stored;
     }
 
     public long getVideoOffset(String songName) {
-        return songVideoOffsets.getOrDefault(songName, 0L);
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        return id == SongCatalog.NO_SONG ? 0L : videoOffset(current, id);
+    }
+
+    private long videoOffset(CatalogView songs, int id) {
+        long stored = songs.videoOffset(id);
+        return stored == MEDIA_UNRESOLVED ? unresolvedFolderMedia(songs.baseFolder(id)).videoOffsetMillis() : stored;
+    }
+
+    private FolderMedia unresolvedFolderMedia(String baseFolder) {
+        if (baseFolder == null || baseFolder.isBlank()) {
+            return FolderMedia.NONE;
+        }
+        return folderMediaFallbacks.computeIfAbsent(baseFolder, this::resolveFolderMedia);
+    }
+
+    private FolderMedia resolveFolderMedia(String baseFolder) {
+        BeatmapFolderListing listing = BeatmapFolderListing.read(new File(baseFolder));
+        String videoPath = null;
+        long videoOffset = 0;
+        String backgroundPath = null;
+        for (File osuFile : listing.osuFiles()) {
+            BeatmapParser.BeatmapFileInfo info = beatmapParser.parseBeatmapFile(osuFile);
+            if (info == null) {
+                continue;
+            }
+            if (backgroundPath == null && info.backgroundFilename() != null) {
+                File backgroundFile = listing.resolve(info.backgroundFilename());
+                backgroundPath = backgroundFile == null ? null : backgroundFile.getAbsolutePath();
+            }
+            if (videoPath == null && info.videoEvent() != null && info.videoEvent().filename != null) {
+                File videoFile = listing.resolve(info.videoEvent().filename);
+                if (videoFile != null) {
+                    videoPath = videoFile.getAbsolutePath();
+                    videoOffset = info.videoEvent().offsetMillis;
+                }
+            }
+            if (videoPath != null && backgroundPath != null) {
+                break;
+            }
+        }
+        return new FolderMedia(videoPath, videoOffset, backgroundPath);
     }
 
     public SongMetadataDetails getMetadata(String songName) {
-        return songMetadataDetails.get(songName);
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        if (id == SongCatalog.NO_SONG) {
+            return null;
+        }
+        return new SongMetadataDetails(current.title(id), current.artist(id), current.mapper(id),
+            current.difficulty(id), current.beatmapId(id), current.beatmapSetId(id), current.source(id),
+            current.audioPath(id), getVideoPath(songName), videoOffset(current, id), getCoverImagePath(songName),
+            current.baseFolder(id), current.tags(id));
     }
 
     public SongDisplayParts getDisplayParts(String songName) {
-        return songDisplayParts.get(songName);
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        if (id == SongCatalog.NO_SONG) {
+            return null;
+        }
+        String difficulty = current.difficulty(id);
+        boolean showDifficultySegment = current.showDifficulty(id)
+            && difficulty != null
+            && !difficulty.isBlank();
+        int occurrence = current.occurrence(id);
+        return new SongDisplayParts(
+            current.baseName(id),
+            showDifficultySegment ? difficulty.trim() : null,
+            current.mapperShown(id) ? current.mapper(id) : null,
+            occurrence > 1 ? "[" + occurrence + "]" : null);
     }
 
     private String resolveMapper(BeatmapParser.SongMetadata meta, File beatmapFolder) {
@@ -462,13 +1195,33 @@ public class MusicManager {
     }
 
     private String buildBaseDisplayLabel(SongEntry entry) {
-        String label = entry.baseName;
-        if (entry.showDifficulty && entry.difficultyName != null && !entry.difficultyName.isBlank()) {
-            label += " / " + entry.difficultyName;
+        return buildBaseDisplayLabel(entry.baseName, entry.showDifficulty, entry.difficultyName);
+    }
+
+    private String buildBaseDisplayLabel(String baseName, boolean showDifficulty, String difficultyName) {
+        String label = baseName;
+        if (showDifficulty && difficultyName != null && !difficultyName.isBlank()) {
+            label += " / " + difficultyName;
         }
         return label;
     }
 
+    private static SongVariant preferredRepresentative(SongVariant current, SongVariant candidate) {
+        if (SongKeys.beatmapKey(candidate.beatmapId, candidate.beatmapSetId) == null) {
+            return current;
+        }
+        if (SongKeys.beatmapKey(current.beatmapId, current.beatmapSetId) == null) {
+            return candidate;
+        }
+        return compareBeatmapIds(candidate.beatmapId.trim(), current.beatmapId.trim()) < 0 ? candidate : current;
+    }
+
+    private static int compareBeatmapIds(String left, String right) {
+        String a = left.replaceFirst("^0+", "");
+        String b = right.replaceFirst("^0+", "");
+        return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+    }
+
     private String buildMediaKey(SongVariant variant) {
         String video = variant.videoPath == null ? "" : variant.videoPath;
         return variant.audioPath + "::" + video;
@@ -524,24 +1277,19 @@ public class MusicManager {
         if (displayName == null) {
             return;
         }
-        songs.remove(displayName);
-        songBaseFolders.remove(displayName);
-        songTags.remove(displayName);
-        songCreators.remove(displayName);
-        songVideoPaths.remove(displayName);
-        songVideoOffsets.remove(displayName);
-        songBackgroundPaths.remove(displayName);
-        songMetadataDetails.remove(displayName);
-        songDisplayParts.remove(displayName);
-
-        String baseDisplay = displayNameToBaseDisplay.remove(displayName);
-        if (baseDisplay != null) {
-            baseDisplayCounts.computeIfPresent(baseDisplay, (key, value) -> value <= 1 ? null : value - 1);
-        }
-        String canonicalKey = displayNameToCanonicalKey.remove(displayName);
-        if (canonicalKey != null) {
-            canonicalDisplayCounters.computeIfPresent(canonicalKey, (key, value) -> value <= 1 ? null : value - 1);
+        int id = catalog.idOf(displayName);
+        if (id == SongCatalog.NO_SONG) {
+            return;
         }
+        String baseDisplay = buildBaseDisplayLabel(catalog.baseName(id), catalog.showDifficulty(id), catalog.difficulty(id));
+        String canonicalKey = catalog.mapperShown(id)
+            ? baseDisplay + " (" + canonicalMapperLabel(catalog.mapper(id)) + ")"
+            : baseDisplay;
+        fieldIndex.remove(id, catalog);
+        catalog.remove(displayName);
+        searchIndex.remove(id);
+        baseDisplayCounts.computeIfPresent(baseDisplay, (key, value) -> value <= 1 ? null : value - 1);
+        canonicalDisplayCounters.computeIfPresent(canonicalKey, (key, value) -> value <= 1 ? null : value - 1);
     }
 
     private void pruneHistoryEntries(Set<String> removedSongs) {
@@ -576,8 +1324,14 @@ public class MusicManager {
     private void persistLibraryCache(String normalizedFolderPath,
                                      FolderSnapshot snapshot,
                                      List<SongEntry> entries) {
+        saveLibraryCache(prepareLibraryCache(normalizedFolderPath, snapshot, entries));
+    }
+
+    private PendingLibraryCache prepareLibraryCache(String normalizedFolderPath,
+                                                    FolderSnapshot snapshot,
+                                                    List<SongEntry> entries) {
         if (configManager == null || snapshot == null || normalizedFolderPath == null) {
-            return;
+            return null;
         }
         List<SongLibraryCache.FolderSignature> signatures = new ArrayList<>();
         snapshot.folderModifiedTimes().entrySet().stream()
@@ -602,7 +1356,8 @@ public class MusicManager {
                 entry.showDifficulty,
                 entry.beatmapId,
                 entry.beatmapSetId,
-                entry.source
+                entry.source,
+                entry.searchKey
             ));
         }
         Map<String, Integer> difficultyCopy = new HashMap<>(folderDifficultyCounts);
@@ -614,44 +1369,47 @@ public class MusicManager {
             difficultyCopy,
             totalDifficultyCount
         );
-        configManager.saveSongLibraryCache(cache);
+        return new PendingLibraryCache(cache, ++preparedCacheSequence);
+    }
+
+    private void saveLibraryCache(PendingLibraryCache pending) {
+        if (pending == null) {
+            return;
+        }
+        synchronized (cacheWriteLock) {
+            // Writes can finish out of order once they leave the library lock; never let an older one win.
+            if (pending.sequence() <= savedCacheSequence) {
+                return;
+            }
+            configManager.saveSongLibraryCache(pending.cache());
+            savedCacheSequence = pending.sequence();
+        }
     }
 
     private List<SongEntry> exportCurrentEntriesForCache() {
-        List<SongEntry> entries = new ArrayList<>(songs.size());
-        for (Map.Entry<String, String> songEntry : songs.entrySet()) {
-            String displayName = songEntry.getKey();
-            SongMetadataDetails metadata = songMetadataDetails.get(displayName);
-            SongDisplayParts parts = songDisplayParts.get(displayName);
-            if (metadata == null || parts == null || parts.baseText == null) {
+        List<SongEntry> entries = new ArrayList<>(catalog.size());
+        for (int id = catalog.firstId(); id >= 0; id = catalog.nextId(id)) {
+            if (catalog.baseName(id) == null) {
                 continue;
             }
-            boolean showDifficulty = parts.difficultyText != null;
-            List<String> tags = songTags.get(displayName);
-            if (tags == null) {
-                tags = Collections.emptyList();
-            }
-            List<String> creators = songCreators.get(displayName);
-            if (creators == null) {
-                creators = Collections.emptyList();
-            }
             entries.add(new SongEntry(
-                parts.baseText,
-                metadata.title,
-                metadata.artist,
-                metadata.difficulty,
-                metadata.mapper,
-                songEntry.getValue(),
-                songVideoPaths.get(displayName),
-                songVideoOffsets.getOrDefault(displayName, 0L),
-                songBackgroundPaths.get(displayName),
-                songBaseFolders.get(displayName),
-                tags,
-                creators,
-                showDifficulty,
-                metadata.beatmapId,
-                metadata.beatmapSetId,
-                metadata.source
+                catalog.baseName(id),
+                catalog.title(id),
+                catalog.artist(id),
+                catalog.difficulty(id),
+                catalog.mapper(id),
+                catalog.audioPath(id),
+                catalog.videoPath(id),
+                catalog.videoOffset(id),
+                catalog.backgroundPath(id),
+                catalog.baseFolder(id),
+                catalog.tags(id),
+                catalog.creators(id),
+                catalog.showDifficulty(id),
+                catalog.beatmapId(id),
+                catalog.beatmapSetId(id),
+                catalog.source(id),
+                catalog.searchKey(id)
             ));
         }
         return entries;
@@ -692,6 +1450,51 @@ public class MusicManager {
         }
     }
 
+    private record FolderScanResult(String normalizedFolder, int difficultyCount, List<SongEntry> entries) { }
+
+    private record PendingLibraryCache(SongLibraryCache cache, long sequence) { }
+
+    private record FolderMedia(String videoPath, long videoOffsetMillis, String backgroundPath) {
+        static final FolderMedia NONE = new FolderMedia(null, 0, null);
+    }
+
+    private final class ProgressivePublisher {
+        private final LibraryBatchCallback callback;
+        private final List<String> pendingSongs = new ArrayList<>();
+        private int pendingFolders;
+        private int batchFolders = PROGRESSIVE_FIRST_BATCH_FOLDERS;
+
+        private ProgressivePublisher(LibraryBatchCallback callback) {
+            this.callback = callback;
+        }
+
+        void accept(FolderScanResult result) {
+            if (result != null) {
+                for (SongEntry entry : result.entries()) {
+                    String displayName = insertSongEntry(entry, true);
+                    if (displayName != null) {
+                        pendingSongs.add(displayName);
+                    }
+                }
+            }
+            if (++pendingFolders >= batchFolders) {
+                flush();
+            }
+        }
+
+        void flush() {
+            pendingFolders = 0;
+            batchFolders = PROGRESSIVE_BATCH_FOLDERS;
+            if (pendingSongs.isEmpty()) {
+                return;
+            }
+            publishLibrary();
+            List<String> batch = List.copyOf(pendingSongs);
+            pendingSongs.clear();
+            callback.onBatchPublished(batch);
+        }
+    }
+
     private static class SongVariant {
         final String baseName;
         final String title;
@@ -708,10 +1511,12 @@ public class MusicManager {
         final String beatmapId;
         final String beatmapSetId;
         final String source;
+        final String searchKey;
 
         SongVariant(String baseName, String title, String artist, String difficultyName, String mapper,
                 String audioPath, String videoPath, String backgroundPath, String baseFolder, List<String> tags,
-                    List<String> creators, String beatmapId, String beatmapSetId, String source, long videoOffsetMillis) {
+                    List<String> creators, String beatmapId, String beatmapSetId, String source, String searchKey,
+                    long videoOffsetMillis) {
             this.baseName = baseName;
             this.title = title;
             this.artist = artist;
@@ -727,16 +1532,17 @@ public class MusicManager {
             this.beatmapId = beatmapId;
             this.beatmapSetId = beatmapSetId;
             this.source = source;
+            this.searchKey = searchKey;
         }
 
         SongEntry toEntry(boolean showDifficulty) {
             return new SongEntry(baseName, title, artist, difficultyName, mapper, audioPath,
                 videoPath, videoOffsetMillis, backgroundPath, baseFolder, tags, creators, showDifficulty, beatmapId,
-                    beatmapSetId, source);
+                    beatmapSetId, source, searchKey);
         }
     }
 
-    private static class SongEntry {
+    static class SongEntry {
         final String baseName;
         final String title;
         final String artist;
@@ -753,11 +1559,12 @@ public class MusicManager {
         final String beatmapId;
         final String beatmapSetId;
         final String source;
+        final String searchKey;
 
           SongEntry(String baseName, String title, String artist, String difficultyName, String mapper,
                 String audioPath, String videoPath, long videoOffsetMillis, String backgroundPath, String baseFolder, List<String> tags,
                 List<String> creators, boolean showDifficulty, String beatmapId,
-                String beatmapSetId, String source) {
+                String beatmapSetId, String source, String searchKey) {
             this.baseName = baseName;
             this.title = title;
             this.artist = artist;
@@ -774,13 +1581,7 @@ public class MusicManager {
             this.beatmapId = beatmapId;
             this.beatmapSetId = beatmapSetId;
             this.source = source;
-        }
-
-        SongMetadataDetails toMetadataDetails() {
-                return new SongMetadataDetails(title, artist, mapper, difficultyName,
-                    beatmapId, beatmapSetId, source, audioPath,
-                    videoPath, videoOffsetMillis, backgroundPath, baseFolder,
-                    tags == null ? Collections.emptyList() : tags);
+            this.searchKey = searchKey;
         }
     }
 
@@ -794,32 +1595,227 @@ public class MusicManager {
     }
 
     public List<String> getTags(String songName) {
-        return songTags.getOrDefault(songName, Collections.emptyList());
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        return id == SongCatalog.NO_SONG ? Collections.emptyList() : current.tags(id);
     }
 
     public List<String> getCreators(String songName) {
-        return songCreators.getOrDefault(songName, Collections.emptyList());
+        CatalogView current = library.catalog();
+        int id = current.idOf(songName);
+        return id == SongCatalog.NO_SONG ? Collections.emptyList() : current.creators(id);
     }
 
     public List<String> searchSongs(String query) {
-        if (query == null || query.isEmpty()) return new ArrayList<>(songs.keySet());
+        Library current = library;
+        SongQuery compiled = SongQuery.parse(query);
+        if (compiled.isEmpty()) return new ArrayList<>(current.catalog().asPathMap().keySet());
+
+        BitSet matches = compiled.evaluate(current.searchIndex(), current.fieldIndex(), false);
+        List<String> results = new ArrayList<>(matches.cardinality());
+        for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+            results.add(current.catalog().displayName(id));
+        }
+        return results;
+    }
+
+    public Predicate<String> searchPredicate(String query) {
+        return searchPredicate(query, null, false);
+    }
 
-        String lowerQuery = query.toLowerCase();
-        List<String> results = new ArrayList<>();
+    public Predicate<String> searchPredicate(String query, Predicate<String> previous, boolean fuzzy) {
+        return searchPredicate(query, Map.of(), previous, fuzzy);
+    }
 
-        for (String name : songs.keySet()) {
-            if (name.toLowerCase().contains(lowerQuery)) {
-                results.add(name);
-                continue;
+    public Predicate<String> searchPredicate(String query, Map<FacetField, Set<String>> facets,
+                                             Predicate<String> previous, boolean fuzzy) {
+        SongQuery compiled = SongQuery.parse(query).withFacets(facets);
+        if (compiled.isEmpty()) {
+            return song -> true;
+        }
+        Library current = library;
+        if (previous instanceof IndexedSearch earlier) {
+            SearchState state = earlier.state;
+            int refineFrom = fuzzy ? -1 : earlier.refinableFrom(compiled);
+            if (refineFrom >= 0 && state.isCurrent(current)) {
+                List<String> tokens = compiled.textTokens();
+                SongSearchIndex.Matches refined = current.searchIndex().refine(
+                    new SongSearchIndex.Matches(state.searchIndex().version(), state.ids()),
+                    tokens.subList(refineFrom, tokens.size()));
+                if (refined != null) {
+                    return new IndexedSearch(compiled, fuzzy,
+                        new SearchState(current.searchIndex(), current.fieldIndex(), refined.ids()));
+                }
             }
-            for (String tag : songTags.getOrDefault(name, Collections.emptyList())) {
-                if (tag.toLowerCase().contains(lowerQuery)) {
-                    results.add(name);
-                    break;
+        }
+        return new IndexedSearch(compiled, fuzzy, evaluateSearch(current, compiled, fuzzy));
+    }
+
+    public List<FacetValue> topFacetValues(FacetField field, Predicate<String> results, int limit) {
+        Library current = library;
+        BitSet ids = results instanceof IndexedSearch search ? search.idsFor(current) : null;
+        SongFieldIndex.Snapshot fields = current.fieldIndex();
+        List<SongFieldIndex.FacetCount> counts = switch (field) {
+            case ARTIST -> fields.topValues(SongFieldIndex.Field.ARTIST, ids, limit);
+            case MAPPER -> fields.topValues(SongFieldIndex.Field.MAPPER, ids, limit);
+            case TAG -> fields.topValues(SongFieldIndex.Field.TAG, ids, limit);
+            case HAS -> fields.flagCounts(ids);
+        };
+        List<FacetValue> values = new ArrayList<>(counts.size());
+        for (SongFieldIndex.FacetCount count : counts) {
+            values.add(new FacetValue(count.value(), count.label(), count.count()));
+        }
+        return values;
+    }
+
+    public List<String> rankSongs(Predicate<String> results, int limit) {
+        if (!(results instanceof IndexedSearch search) || limit <= 0) {
+            return List.of();
+        }
+        Library current = library;
+        CatalogView songs = current.catalog();
+        BitSet matches = search.idsFor(current);
+        List<String> tokens = search.query.textTokens();
+        String phrase = String.join(" ", tokens);
+
+        List<String> history = historyManager.getHistory();
+        Map<String, Integer> recency = new HashMap<>();
+        for (int i = 0; i < history.size(); i++) {
+            recency.put(history.get(i), i + 1);
+        }
+        Map<String, Integer> playCounts = historyManager.getPlayCounts();
+
+        PriorityQueue<RankedSong> best = new PriorityQueue<>(RANKED_ORDER);
+        for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+            String name = songs.displayName(id);
+            int score = relevanceScore(songs, id, tokens, phrase)
+                + historyBonus(name, recency, history.size(), playCounts);
+            RankedSong candidate = new RankedSong(id, name, score);
+            if (best.size() < limit) {
+                best.add(candidate);
+            } else if (RANKED_ORDER.compare(candidate, best.peek()) > 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+
+        String[] ranked = new String[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll().name();
+        }
+        return List.of(ranked);
+    }
+
+    private int relevanceScore(CatalogView songs, int id, List<String> tokens, String phrase) {
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        String title = SearchKeys.normalize(songs.title(id));
+        String artist = SearchKeys.normalize(songs.artist(id));
+        String mapper = SearchKeys.normalize(songs.mapper(id));
+        List<String> tags = songs.tags(id);
+        int score = RelevanceScoring.tokenScore(tokens, token -> {
+            int fieldScore = Math.max(
+                RelevanceScoring.matchScore(title, token, TITLE_WEIGHT),
+                Math.max(RelevanceScoring.matchScore(artist, token, ARTIST_WEIGHT),
+                    RelevanceScoring.matchScore(mapper, token, MAPPER_WEIGHT)));
+            if (fieldScore == 0 && tags != null) {
+                for (String tag : tags) {
+                    fieldScore = Math.max(fieldScore,
+                        RelevanceScoring.matchScore(SearchKeys.normalize(tag), token, TAG_WEIGHT));
                 }
             }
+            return fieldScore;
+        });
+        if (title.equals(phrase)) {
+            score += EXACT_TITLE_BONUS;
+        } else if (title.startsWith(phrase)) {
+            score += TITLE_PREFIX_BONUS;
+        }
+        return score;
+    }
+
+    private int historyBonus(String name, Map<String, Integer> recency, int historySize,
+                             Map<String, Integer> playCounts) {
+        int bonus = 0;
+        Integer position = recency.get(name);
+        if (position != null) {
+            bonus += RECENCY_WEIGHT * position / historySize;
+        }
+        Integer plays = playCounts.get(name);
+        if (plays != null) {
+            bonus += Math.min(plays, MAX_COUNTED_PLAYS) * PLAY_COUNT_WEIGHT;
+        }
+        return bonus;
+    }
+
+    private record RankedSong(int id, String name, int score) { }
+
+    private SearchState evaluateSearch(Library current, SongQuery compiled, boolean fuzzy) {
+        SongSearchIndex.Snapshot textIndex = current.searchIndex();
+        SongFieldIndex.Snapshot fields = current.fieldIndex();
+        BitSet ids = compiled.evaluate(textIndex, fields, fuzzy);
+        return new SearchState(textIndex, fields, ids);
+    }
+
+    // The indexes are published together with the catalog, so ids from either always
+    // refer to live rows of the same catalog snapshot.
+    private record Library(SongCatalog.Snapshot catalog, SongSearchIndex.Snapshot searchIndex,
+                           SongFieldIndex.Snapshot fieldIndex, int difficultyCount, long version) { }
+
+    private record SearchState(SongSearchIndex.Snapshot searchIndex, SongFieldIndex.Snapshot fieldIndex, BitSet ids) {
+        boolean isCurrent(Library current) {
+            return searchIndex == current.searchIndex() && fieldIndex == current.fieldIndex();
+        }
+    }
+
+    private final class IndexedSearch implements Predicate<String> {
+        private final SongQuery query;
+        private final boolean fuzzy;
+        private volatile SearchState state;
+
+        IndexedSearch(SongQuery query, boolean fuzzy, SearchState state) {
+            this.query = query;
+            this.fuzzy = fuzzy;
+            this.state = state;
+        }
+
+        int refinableFrom(SongQuery newQuery) {
+            if (fuzzy || !query.hasSameClauses(newQuery)) {
+                return -1;
+            }
+            List<String> tokens = query.textTokens();
+            List<String> newTokens = newQuery.textTokens();
+            if (tokens.isEmpty()) {
+                return 0;
+            }
+            int last = tokens.size() - 1;
+            if (newTokens.size() < tokens.size()) {
+                return -1;
+            }
+            for (int i = 0; i < last; i++) {
+                if (!tokens.get(i).equals(newTokens.get(i))) {
+                    return -1;
+                }
+            }
+            return newTokens.get(last).contains(tokens.get(last)) ? last : -1;
+        }
+
+        BitSet idsFor(Library current) {
+            SearchState currentState = state;
+            if (!currentState.isCurrent(current)) {
+                currentState = evaluateSearch(current, query, fuzzy);
+                state = currentState;
+            }
+            return currentState.ids();
+        }
+
+        @Override
+        public boolean test(String song) {
+            Library current = library;
+            int id = current.catalog().idOf(song);
+            return id != SongCatalog.NO_SONG && idsFor(current).get(id);
         }
-        return results;
     }
 
     
@@ -834,18 +1830,49 @@ public class MusicManager {
     public int getHistoryIndex() { return historyManager.getIndex(); }
     public void setHistoryIndex(int index) { historyManager.setIndex(index); }
     public void setHistory(List<String> history, int index) { historyManager.setHistory(history, index); }
+    public Map<String, Integer> getPlayCounts() { return historyManager.getPlayCounts(); }
+    public void mergePlayCounts(Map<String, Integer> playCounts) { historyManager.mergePlayCounts(playCounts); }
+
+    public List<String> getRecentBeatmapSets() {
+        CatalogView current = library.catalog();
+        Set<String> sets = new LinkedHashSet<>();
+        List<String> history = historyManager.getHistory();
+        for (int i = history.size() - 1; i >= 0 && sets.size() < RECENT_FOLDER_HINTS; i--) {
+            int id = current.idOf(history.get(i));
+            String setId = id == SongCatalog.NO_SONG ? null : current.beatmapSetId(id);
+            if (setId != null && setId.trim().matches("[1-9]\\d*")) {
+                sets.add(setId.trim());
+            }
+        }
+        return new ArrayList<>(sets);
+    }
+
+    public synchronized List<String> removeSongsByFolder(Path folder) {
+        List<String> removed = removeSongsByFolderInternal(folder);
+        pruneHistoryEntries(Set.copyOf(removed));
+        if (!removed.isEmpty()) {
+            publishLibrary();
+            refreshCacheFromCurrentState();
+        }
+        return removed;
+    }
 
-    public List<String> removeSongsByFolder(Path folder) {
+    private List<String> removeSongsByFolderInternal(Path folder) {
         if (folder == null) {
             return Collections.emptyList();
         }
         String normalized = normalizeFolderPath(folder.toString());
+        folderMediaFallbacks.remove(normalized);
         List<String> targets = new ArrayList<>();
-        for (Map.Entry<String, String> entry : songBaseFolders.entrySet()) {
-            if (normalized.equals(entry.getValue())) {
-                targets.add(entry.getKey());
+        for (int id = catalog.firstId(); id >= 0; id = catalog.nextId(id)) {
+            if (normalized.equals(catalog.baseFolder(id))) {
+                targets.add(catalog.displayName(id));
             }
         }
+        Integer difficulties = folderDifficultyCounts.remove(normalized);
+        if (difficulties != null && difficulties > 0) {
+            totalDifficultyCount = Math.max(0, totalDifficultyCount - difficulties);
+        }
         if (targets.isEmpty()) {
             return Collections.emptyList();
         }
@@ -854,17 +1881,38 @@ public class MusicManager {
             removed.add(displayName);
             removeSongInternal(displayName);
         }
-        Integer difficulties = folderDifficultyCounts.remove(normalized);
-        if (difficulties != null && difficulties > 0) {
-            totalDifficultyCount = Math.max(0, totalDifficultyCount - difficulties);
-        }
-        pruneHistoryEntries(Set.copyOf(removed));
-        if (!removed.isEmpty()) {
-            refreshCacheFromCurrentState();
+        if (catalog.compactIfSparse()) {
+            rebuildSearchIndex();
         }
         return removed;
     }
 
+    public enum FacetField {
+        ARTIST,
+        MAPPER,
+        TAG,
+        HAS
+    }
+
+    public record FacetValue(String value, String label, int count) { }
+
+    public record StringPoolStats(long lookups, long hits, long bytesSaved, int uniqueStrings, int uniqueLists) {
+        public double hitRate() {
+            return lookups == 0 ? 0d : hits / (double) lookups;
+        }
+    }
+
+    public record LibraryDelta(List<String> addedSongs, List<String> removedSongs) {
+        public LibraryDelta {
+            addedSongs = List.copyOf(addedSongs);
+            removedSongs = List.copyOf(removedSongs);
+        }
+
+        public boolean isEmpty() {
+            return addedSongs.isEmpty() && removedSongs.isEmpty();
+        }
+    }
+
     public static class SongMetadataDetails {
         public final String title;
         public final String artist;
@@ -898,7 +1946,7 @@ public class MusicManager {
             this.baseFolder = baseFolder;
             this.tags = tags == null
                     ? Collections.emptyList()
-                    : Collections.unmodifiableList(new ArrayList<>(tags));
+                    : List.copyOf(tags);
         }
     }
 
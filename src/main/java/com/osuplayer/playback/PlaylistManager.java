@@ -1,11 +1,15 @@
 package com.osuplayer.playback;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import com.osuplayer.config.ConfigManager;
 
@@ -17,11 +21,15 @@ public class PlaylistManager {
     public static final String PLAYLIST_QUEUE = "Cola";
 
     private final ConfigManager configManager;
-    private final Map<String, List<String>> playlists;
+    private final SongKeyResolver songKeys;
+    private final Map<String, PlaylistSongs> playlists;
     private final Set<String> specialPlaylists = Set.of(PLAYLIST_ALL, PLAYLIST_FAVORITES, PLAYLIST_HISTORY, PLAYLIST_QUEUE);
+    private Supplier<List<String>> librarySongs = List::of;
+    private boolean legacyEntries;
 
-    public PlaylistManager(ConfigManager configManager) {
+    public PlaylistManager(ConfigManager configManager, SongKeyResolver songKeys) {
         this.configManager = configManager;
+        this.songKeys = songKeys;
         this.playlists = new LinkedHashMap<>();
         loadPlaylists();
     }
@@ -29,30 +37,57 @@ public class PlaylistManager {
     private void loadPlaylists() {
         Map<String, List<String>> loaded = configManager.getPlaylists();
         if (loaded != null) {
-            playlists.putAll(loaded);
+            for (Map.Entry<String, List<String>> entry : loaded.entrySet()) {
+                if (!isLibraryPlaylist(entry.getKey())) {
+                    PlaylistSongs songs = newPlaylist(entry.getKey(), entry.getValue());
+                    legacyEntries |= songs.hasLegacyEntries();
+                    playlists.put(entry.getKey(), songs);
+                }
+            }
         }
         ensureSpecialPresence();
         reorderSpecialPlaylists();
         savePlaylists();
     }
 
+    private PlaylistSongs newPlaylist(String name, Collection<String> songs) {
+        return isQueuePlaylist(name) ? PlaylistSongs.queue(songs) : PlaylistSongs.ordered(songs);
+    }
+
+    private PlaylistSongs playlistFor(String name) {
+        return playlists.computeIfAbsent(name, key -> newPlaylist(key, List.of()));
+    }
+
+    private List<String> keysOf(Collection<String> songNames) {
+        List<String> keys = new ArrayList<>(songNames == null ? 0 : songNames.size());
+        if (songNames == null) {
+            return keys;
+        }
+        for (String song : songNames) {
+            String key = songKeys.songKeyOf(song);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
     private void ensureSpecialPresence() {
-        playlists.putIfAbsent(PLAYLIST_QUEUE, new ArrayList<>());
-        playlists.putIfAbsent(PLAYLIST_ALL, new ArrayList<>());
-        playlists.putIfAbsent(PLAYLIST_FAVORITES, new ArrayList<>());
-        playlists.putIfAbsent(PLAYLIST_HISTORY, new ArrayList<>());
+        playlistFor(PLAYLIST_QUEUE);
+        playlistFor(PLAYLIST_FAVORITES);
+        playlistFor(PLAYLIST_HISTORY);
     }
 
     private void reorderSpecialPlaylists() {
-        Map<String, List<String>> ordered = new LinkedHashMap<>();
-        List<String> specialOrder = List.of(PLAYLIST_ALL, PLAYLIST_FAVORITES, PLAYLIST_HISTORY, PLAYLIST_QUEUE);
+        Map<String, PlaylistSongs> ordered = new LinkedHashMap<>();
+        List<String> specialOrder = List.of(PLAYLIST_FAVORITES, PLAYLIST_HISTORY, PLAYLIST_QUEUE);
         for (String special : specialOrder) {
-            List<String> values = playlists.get(special);
+            PlaylistSongs values = playlists.get(special);
             if (values != null) {
                 ordered.put(special, values);
             }
         }
-        for (Map.Entry<String, List<String>> entry : playlists.entrySet()) {
+        for (Map.Entry<String, PlaylistSongs> entry : playlists.entrySet()) {
             if (!specialPlaylists.contains(entry.getKey())) {
                 ordered.put(entry.getKey(), entry.getValue());
             }
@@ -65,52 +100,126 @@ public class PlaylistManager {
         return specialPlaylists.contains(name);
     }
 
+    public boolean isLibraryPlaylist(String name) {
+        return PLAYLIST_ALL.equals(name);
+    }
+
+    public void setLibrarySongs(Supplier<List<String>> librarySongs) {
+        this.librarySongs = librarySongs == null ? List::of : librarySongs;
+    }
+
     public boolean createPlaylist(String name) {
         String trimmed = name.trim();
         if (trimmed.isEmpty() || playlists.containsKey(trimmed) || isSpecialPlaylist(trimmed)) {
             return false;
         }
-        playlists.put(trimmed, new ArrayList<>());
-        savePlaylists();
+        playlists.put(trimmed, newPlaylist(trimmed, List.of()));
+        configManager.setPlaylistSongs(trimmed, List.of());
         return true;
     }
 
     public void deletePlaylist(String name) {
         if (!isSpecialPlaylist(name)) {
-            playlists.remove(name);
-            savePlaylists();
+            if (playlists.remove(name) != null) {
+                configManager.deletePlaylist(name);
+            }
         }
     }
 
     public void addToPlaylist(String playlist, String song) {
-        if (song == null || song.isBlank()) {
-            return;
+        String key = songKeys.songKeyOf(song);
+        if (key != null && !isLibraryPlaylist(playlist) && playlistFor(playlist).add(key)) {
+            configManager.addPlaylistSong(playlist, key);
         }
-        playlists.computeIfAbsent(playlist, k -> new ArrayList<>());
-        List<String> songs = playlists.get(playlist);
-        if (isQueuePlaylist(playlist) || !songs.contains(song)) {
-            songs.add(song);
-            savePlaylists();
+    }
+
+    public boolean addAll(String playlist, Collection<String> songs) {
+        if (isLibraryPlaylist(playlist)) {
+            return false;
+        }
+        List<String> added = playlistFor(playlist).addAll(keysOf(songs));
+        if (added.isEmpty()) {
+            return false;
         }
+        configManager.addPlaylistSongs(playlist, added);
+        return true;
     }
 
     public void removeFromPlaylist(String playlist, String song) {
-        if (playlists.containsKey(playlist)) {
-            playlists.get(playlist).remove(song);
-            savePlaylists();
+        PlaylistSongs songs = playlists.get(playlist);
+        String key = songKeys.songKeyOf(song);
+        if (songs != null && key != null && songs.remove(key)) {
+            configManager.removePlaylistSong(playlist, key);
+        }
+    }
+
+    public boolean removeAll(String playlist, Collection<String> songs) {
+        PlaylistSongs current = playlists.get(playlist);
+        if (current == null || songs == null || songs.isEmpty()) {
+            return false;
+        }
+        List<String> removed = current.removeAll(new HashSet<>(keysOf(songs)));
+        if (removed.isEmpty()) {
+            return false;
         }
+        configManager.removePlaylistSongs(playlist, removed);
+        return true;
+    }
+
+    public boolean replace(String playlist, Collection<String> songs) {
+        if (playlist == null || isLibraryPlaylist(playlist)) {
+            return false;
+        }
+        List<String> keys = keysOf(songs);
+        PlaylistSongs current = playlists.get(playlist);
+        if (current == null) {
+            current = newPlaylist(playlist, keys);
+            playlists.put(playlist, current);
+        } else if (!current.replace(keys)) {
+            return false;
+        }
+        configManager.setPlaylistSongs(playlist, current.asList());
+        return true;
+    }
+
+    public boolean contains(String playlist, String song) {
+        if (isLibraryPlaylist(playlist)) {
+            return librarySongs.get().contains(song);
+        }
+        PlaylistSongs songs = playlists.get(playlist);
+        return songs != null && songs.contains(songKeys.songKeyOf(song));
     }
 
     public List<String> getPlaylist(String name) {
-        return playlists.getOrDefault(name, Collections.emptyList());
+        if (isLibraryPlaylist(name)) {
+            return librarySongs.get();
+        }
+        PlaylistSongs songs = playlists.get(name);
+        return songs == null ? Collections.emptyList() : songs.resolve(songKeys);
     }
 
     public Set<String> getAllPlaylists() {
-        return playlists.keySet();
+        Set<String> names = new LinkedHashSet<>();
+        names.add(PLAYLIST_ALL);
+        names.addAll(playlists.keySet());
+        return Collections.unmodifiableSet(names);
     }
 
     public Map<String, List<String>> getPlaylistsAsMap() {
-        return Collections.unmodifiableMap(playlists);
+        Map<String, List<String>> snapshot = new LinkedHashMap<>();
+        snapshot.put(PLAYLIST_ALL, librarySongs.get());
+        for (Map.Entry<String, PlaylistSongs> entry : playlists.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().resolve(songKeys));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private Map<String, List<String>> storedPlaylists() {
+        Map<String, List<String>> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, PlaylistSongs> entry : playlists.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().asList());
+        }
+        return snapshot;
     }
 
     public boolean isQueuePlaylist(String name) {
@@ -118,53 +227,74 @@ public class PlaylistManager {
     }
 
     public String pollQueue() {
-        List<String> queue = playlists.get(PLAYLIST_QUEUE);
-        if (queue == null || queue.isEmpty()) {
+        PlaylistSongs queue = playlists.get(PLAYLIST_QUEUE);
+        if (queue == null) {
             return null;
         }
-        String next = queue.remove(0);
-        savePlaylists();
-        return next;
+        String key;
+        while ((key = queue.poll()) != null) {
+            configManager.removePlaylistSongAt(PLAYLIST_QUEUE, 0);
+            String song = songKeys.songNameOf(key);
+            if (song != null) {
+                return song;
+            }
+        }
+        return null;
     }
 
     public boolean hasQueuedSongs() {
-        List<String> queue = playlists.get(PLAYLIST_QUEUE);
+        PlaylistSongs queue = playlists.get(PLAYLIST_QUEUE);
         return queue != null && !queue.isEmpty();
     }
 
-    public void pruneQueue(Set<String> validSongs) {
-        List<String> queue = playlists.get(PLAYLIST_QUEUE);
-        if (queue == null) {
+    public void migrateLegacyEntries() {
+        if (!legacyEntries) {
             return;
         }
-        if (queue.removeIf(song -> !validSongs.contains(song))) {
-            savePlaylists();
+        for (Map.Entry<String, PlaylistSongs> entry : playlists.entrySet()) {
+            PlaylistSongs songs = entry.getValue();
+            if (!songs.hasLegacyEntries()) {
+                continue;
+            }
+            List<String> migrated = new ArrayList<>(songs.size());
+            for (String value : songs.asList()) {
+                String key = SongKeys.isKey(value) ? value : songKeys.songKeyOf(value);
+                if (key != null) {
+                    migrated.add(key);
+                }
+            }
+            if (songs.replace(migrated)) {
+                configManager.setPlaylistSongs(entry.getKey(), songs.asList());
+            }
         }
+        legacyEntries = false;
     }
 
     public void setPlaylistSongs(String playlist, List<String> songs) {
-        if (playlist != null) {
-            playlists.put(playlist, new ArrayList<>(songs));
-            savePlaylists();
-        }
-    }
-
-    public void savePlaylists() {
-        configManager.setPlaylists(playlists);
+        replace(playlist, songs);
     }
 
-    public void removeSongsFromAllPlaylists(List<String> songsToRemove) {
-        if (songsToRemove == null || songsToRemove.isEmpty()) {
-            return;
-        }
-        boolean updated = false;
-        for (List<String> playlistSongs : playlists.values()) {
-            if (playlistSongs.removeAll(songsToRemove)) {
-                updated = true;
+    public int importPlaylists(Map<String, List<String>> imported) {
+        int changed = 0;
+        for (Map.Entry<String, List<String>> entry : imported.entrySet()) {
+            String name = entry.getKey() == null ? "" : entry.getKey().trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (isSpecialPlaylist(name)) {
+                name = name + " (osu!)";
+            }
+            if (!playlists.containsKey(name)) {
+                replace(name, entry.getValue());
+                changed++;
+            } else if (addAll(name, entry.getValue())) {
+                changed++;
             }
         }
-        if (updated) {
-            savePlaylists();
-        }
+        return changed;
+    }
+
+    public void savePlaylists() {
+        configManager.setPlaylists(storedPlaylists());
     }
-}
\ No newline at end of file
+}
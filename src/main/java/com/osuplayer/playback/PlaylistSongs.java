@@ -0,0 +1,159 @@
+package com.osuplayer.playback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+final class PlaylistSongs {
+
+    private final Collection<String> songs;
+    private List<String> view;
+    private List<String> resolved;
+    private long resolvedVersion;
+
+    private PlaylistSongs(Collection<String> songs) {
+        this.songs = songs;
+    }
+
+    static PlaylistSongs ordered(Collection<String> initial) {
+        PlaylistSongs playlist = new PlaylistSongs(new LinkedHashSet<>());
+        playlist.addAll(initial);
+        return playlist;
+    }
+
+    static PlaylistSongs queue(Collection<String> initial) {
+        PlaylistSongs playlist = new PlaylistSongs(new ArrayDeque<>());
+        playlist.addAll(initial);
+        return playlist;
+    }
+
+    int size() {
+        return songs.size();
+    }
+
+    boolean isEmpty() {
+        return songs.isEmpty();
+    }
+
+    boolean contains(String song) {
+        return song != null && songs.contains(song);
+    }
+
+    boolean add(String song) {
+        if (song == null || song.isBlank() || !songs.add(song)) {
+            return false;
+        }
+        changed();
+        return true;
+    }
+
+    List<String> addAll(Collection<String> candidates) {
+        List<String> added = new ArrayList<>();
+        if (candidates == null) {
+            return added;
+        }
+        for (String song : candidates) {
+            if (add(song)) {
+                added.add(song);
+            }
+        }
+        return added;
+    }
+
+    boolean remove(String song) {
+        if (song == null || !songs.remove(song)) {
+            return false;
+        }
+        changed();
+        return true;
+    }
+
+    List<String> removeAll(Set<String> targets) {
+        List<String> removed = new ArrayList<>();
+        if (targets.isEmpty() || songs.isEmpty()) {
+            return removed;
+        }
+        if (songs instanceof Set<String> unique && targets.size() < unique.size()) {
+            for (String song : targets) {
+                if (unique.remove(song)) {
+                    removed.add(song);
+                }
+            }
+        } else {
+            songs.removeIf(song -> {
+                if (targets.contains(song)) {
+                    removed.add(song);
+                    return true;
+                }
+                return false;
+            });
+        }
+        if (!removed.isEmpty()) {
+            changed();
+        }
+        return removed;
+    }
+
+    boolean replace(Collection<String> replacement) {
+        List<String> before = asList();
+        songs.clear();
+        changed();
+        addAll(replacement);
+        return !before.equals(asList());
+    }
+
+    String poll() {
+        String next;
+        if (songs instanceof ArrayDeque<String> deque) {
+            next = deque.pollFirst();
+        } else {
+            next = songs.isEmpty() ? null : songs.iterator().next();
+            songs.remove(next);
+        }
+        if (next != null) {
+            changed();
+        }
+        return next;
+    }
+
+    boolean hasLegacyEntries() {
+        for (String song : songs) {
+            if (!SongKeys.isKey(song)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<String> resolve(SongKeyResolver resolver) {
+        long version = resolver.libraryVersion();
+        if (resolved == null || resolvedVersion != version) {
+            List<String> names = new ArrayList<>(songs.size());
+            for (String key : songs) {
+                String name = resolver.songNameOf(key);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+            resolved = Collections.unmodifiableList(names);
+            resolvedVersion = version;
+        }
+        return resolved;
+    }
+
+    List<String> asList() {
+        if (view == null) {
+            view = Collections.unmodifiableList(new ArrayList<>(songs));
+        }
+        return view;
+    }
+
+    private void changed() {
+        view = null;
+        resolved = null;
+    }
+}
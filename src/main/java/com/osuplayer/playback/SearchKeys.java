@@ -0,0 +1,84 @@
+package com.osuplayer.playback;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+final class SearchKeys {
+
+    private SearchKeys() {
+    }
+
+    static String build(List<String> fields) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (field == null || field.isBlank()) {
+                continue;
+            }
+            for (String word : normalize(field).split(" ")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        boolean ascii = isAscii(text);
+        String decomposed;
+        if (ascii) {
+            decomposed = text.toLowerCase(Locale.ROOT);
+        } else {
+            String compatible = Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toUpperCase(Locale.ROOT)
+                .toLowerCase(Locale.ROOT);
+            decomposed = Normalizer.normalize(compatible, Normalizer.Form.NFD);
+        }
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        boolean stripMarks = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); ) {
+            int codePoint = decomposed.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint)) {
+                pendingSpace = folded.length() > 0;
+                continue;
+            }
+            if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+                if (stripMarks) {
+                    continue;
+                }
+            } else {
+                stripMarks = hasStrippableMarks(codePoint);
+            }
+            if (pendingSpace) {
+                folded.append(' ');
+                pendingSpace = false;
+            }
+            folded.appendCodePoint(codePoint);
+        }
+        return ascii ? folded.toString() : Normalizer.normalize(folded, Normalizer.Form.NFC);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasStrippableMarks(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.LATIN
+            || script == Character.UnicodeScript.GREEK
+            || script == Character.UnicodeScript.CYRILLIC;
+    }
+}
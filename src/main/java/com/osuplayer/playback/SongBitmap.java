@@ -0,0 +1,273 @@
+package com.osuplayer.playback;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+final class SongBitmap {
+
+    private static final int ARRAY_CONTAINER_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+    private int cardinality;
+
+    SongBitmap() {
+        keys = new char[0];
+        containers = new Container[0];
+    }
+
+    SongBitmap(SongBitmap other) {
+        keys = Arrays.copyOf(other.keys, other.size);
+        containers = new Container[other.size];
+        for (int i = 0; i < other.size; i++) {
+            containers[i] = other.containers[i].copy();
+        }
+        size = other.size;
+        cardinality = other.cardinality;
+    }
+
+    void add(int songId) {
+        char key = (char) (songId >>> 16);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) songId);
+        cardinality += containers[index].cardinality() - before;
+    }
+
+    void remove(int songId) {
+        int index = indexOf((char) (songId >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.remove((char) songId);
+        cardinality -= before - containers[index].cardinality();
+        if (containers[index].cardinality() == 0) {
+            removeContainer(index);
+        }
+    }
+
+    boolean contains(int songId) {
+        int index = indexOf((char) (songId >>> 16));
+        return index >= 0 && containers[index].contains((char) songId);
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    void orInto(BitSet target) {
+        for (int i = 0; i < size; i++) {
+            containers[i].orInto(target, keys[i] << 16);
+        }
+    }
+
+    int andCardinality(long[] words) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += containers[i].andCardinality(words, keys[i] << 16);
+        }
+        return count;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private abstract static class Container {
+        abstract Container copy();
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract boolean contains(char value);
+        abstract int cardinality();
+        abstract void orInto(BitSet target, int base);
+        abstract int andCardinality(long[] words, int base);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values = new char[2];
+        private int size;
+
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer();
+            copy.values = Arrays.copyOf(values, Math.max(2, size));
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_CONTAINER_LIMIT) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int i = 0; i < size; i++) {
+                    bitmap.add(values[i]);
+                }
+                return bitmap.add(value);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_LIMIT, size * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        void orInto(BitSet target, int base) {
+            for (int i = 0; i < size; i++) {
+                target.set(base + values[i]);
+            }
+        }
+
+        @Override
+        int andCardinality(long[] words, int base) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int bit = base + values[i];
+                int word = bit >>> 6;
+                if (word < words.length && (words[word] & (1L << bit)) != 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[BITMAP_WORDS];
+        private int cardinality;
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, BITMAP_WORDS);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        Container add(char value) {
+            long mask = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long mask = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & mask) == 0) {
+                return this;
+            }
+            words[word] &= ~mask;
+            cardinality--;
+            if (cardinality > ARRAY_CONTAINER_LIMIT / 2) {
+                return this;
+            }
+            ArrayContainer array = new ArrayContainer();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long bits = words[i];
+                while (bits != 0) {
+                    array.add((char) ((i << 6) + Long.numberOfTrailingZeros(bits)));
+                    bits &= bits - 1;
+                }
+            }
+            return array;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void orInto(BitSet target, int base) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long bits = words[i];
+                while (bits != 0) {
+                    target.set(base + (i << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        @Override
+        int andCardinality(long[] other, int base) {
+            int offset = base >>> 6;
+            int limit = Math.min(BITMAP_WORDS, other.length - offset);
+            int count = 0;
+            for (int i = 0; i < limit; i++) {
+                count += Long.bitCount(words[i] & other[offset + i]);
+            }
+            return count;
+        }
+    }
+}
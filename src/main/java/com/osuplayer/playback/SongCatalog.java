@@ -0,0 +1,492 @@
+package com.osuplayer.playback;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+final class SongCatalog extends CatalogView {
+
+    private static final int NAME_SHARDS = 256;
+    private static final int MIN_COMPACTION_HOLES = 1024;
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private final StringPool pool = new StringPool();
+    private Segment[] segments = new Segment[0];
+    private boolean[] ownedSegments = new boolean[0];
+    private Map<String, Integer>[] nameShards = emptyShards();
+    private final boolean[] ownedShards = new boolean[NAME_SHARDS];
+    private Map<String, Integer>[] keyShards = emptyShards();
+    private final boolean[] ownedKeyShards = new boolean[NAME_SHARDS];
+    private int size;
+    private int publishedSize;
+    private int liveCount;
+
+    @Override
+    Segment segment(int id) {
+        return segments[id >>> SEGMENT_BITS];
+    }
+
+    @Override
+    Integer lookup(String displayName) {
+        return nameShards[shardOf(displayName)].get(displayName);
+    }
+
+    @Override
+    Integer lookupKey(String songKey) {
+        return keyShards[shardOf(songKey)].get(songKey);
+    }
+
+    @Override
+    int highWaterMark() {
+        return size;
+    }
+
+    @Override
+    int size() {
+        return liveCount;
+    }
+
+    void clear() {
+        pool.clear();
+        segments = new Segment[0];
+        ownedSegments = new boolean[0];
+        nameShards = emptyShards();
+        Arrays.fill(ownedShards, true);
+        keyShards = emptyShards();
+        Arrays.fill(ownedKeyShards, true);
+        size = 0;
+        publishedSize = 0;
+        liveCount = 0;
+    }
+
+    int add(String displayName, MusicManager.SongEntry entry, String normalizedFolder, boolean showMapper, int occurrence) {
+        Integer previous = lookup(displayName);
+        if (previous != null) {
+            markRemoved(previous);
+        }
+        int id = size++;
+        Segment segment = writableSegment(id);
+        int row = id & SEGMENT_MASK;
+        segment.displayNames[row] = displayName;
+        segment.baseNames[row] = pool.intern(entry.baseName);
+        segment.titles[row] = pool.intern(entry.title);
+        segment.artists[row] = pool.intern(entry.artist);
+        segment.difficulties[row] = pool.intern(entry.difficultyName);
+        segment.mappers[row] = pool.intern(entry.mapper);
+        segment.audioPaths[row] = entry.audioPath;
+        segment.videoPaths[row] = pool.intern(entry.videoPath);
+        segment.videoOffsets[row] = entry.videoOffsetMillis;
+        segment.backgroundPaths[row] = pool.intern(entry.backgroundPath);
+        segment.baseFolders[row] = pool.intern(normalizedFolder);
+        segment.tags[row] = pool.internList(entry.tags);
+        segment.creators[row] = pool.internList(entry.creators);
+        segment.beatmapIds[row] = pool.intern(entry.beatmapId);
+        segment.beatmapSetIds[row] = pool.intern(entry.beatmapSetId);
+        segment.sources[row] = pool.intern(entry.source);
+        segment.searchKeys[row] = entry.searchKey;
+        segment.occurrences[row] = occurrence;
+        segment.showDifficulty[row] = entry.showDifficulty;
+        segment.mapperShown[row] = showMapper;
+        segment.alive[row] = true;
+        liveCount++;
+
+        writableShard(displayName).put(displayName, id);
+        assignSongKey(id);
+        return id;
+    }
+
+    // Once a snapshot has handed a key out it stays with its row: a removed row
+    // frees its key without passing it on, and rows that share an audio file are
+    // told apart by a suffix derived from their content rather than their count.
+    // Only rows nobody has seen yet may still lose a contested b:<id> key to a row
+    // that sorts before them, so a single load does not depend on scan order.
+    private void assignSongKey(int id) {
+        String beatmapKey = beatmapKeyOf(id);
+        if (beatmapKey != null) {
+            Integer holder = lookupKey(beatmapKey);
+            if (holder == null) {
+                setSongKey(id, beatmapKey);
+                return;
+            }
+            if (holder >= publishedSize && compareRows(id, holder) < 0) {
+                setSongKey(holder, variantKeyOf(holder));
+                setSongKey(id, beatmapKey);
+                return;
+            }
+        }
+        setSongKey(id, variantKeyOf(id));
+    }
+
+    private void releaseSongKey(int id) {
+        String songKey = songKey(id);
+        if (songKey != null && Integer.valueOf(id).equals(lookupKey(songKey))) {
+            writableKeyShard(songKey).remove(songKey);
+        }
+    }
+
+    private String variantKeyOf(int id) {
+        String audioKey = audioKeyOf(id);
+        int slot = SongKeys.variantSlot(baseName(id), difficulty(id), mapper(id));
+        String key = SongKeys.duplicateKey(audioKey, slot);
+        while (lookupKey(key) != null) {
+            slot = (slot + 1) & Integer.MAX_VALUE;
+            key = SongKeys.duplicateKey(audioKey, slot);
+        }
+        return key;
+    }
+
+    private void setSongKey(int id, String key) {
+        String previous = songKey(id);
+        if (key.equals(previous)) {
+            return;
+        }
+        if (previous != null && Integer.valueOf(id).equals(lookupKey(previous))) {
+            writableKeyShard(previous).remove(previous);
+        }
+        writableSegment(id).songKeys[id & SEGMENT_MASK] = key;
+        writableKeyShard(key).put(key, id);
+    }
+
+    private int compareRows(int left, int right) {
+        int order = audioKeyOf(left).compareTo(audioKeyOf(right));
+        if (order == 0) {
+            order = NULLS_FIRST.compare(baseName(left), baseName(right));
+        }
+        if (order == 0) {
+            order = NULLS_FIRST.compare(difficulty(left), difficulty(right));
+        }
+        if (order == 0) {
+            order = NULLS_FIRST.compare(mapper(left), mapper(right));
+        }
+        return order;
+    }
+
+    private String beatmapKeyOf(int id) {
+        return SongKeys.beatmapKey(beatmapId(id), beatmapSetId(id));
+    }
+
+    private String audioKeyOf(int id) {
+        return SongKeys.audioKey(beatmapSetId(id), baseFolder(id), audioPath(id));
+    }
+
+    void setMedia(int id, String videoPath, long videoOffset, String backgroundPath) {
+        Segment segment = writableSegment(id);
+        int row = id & SEGMENT_MASK;
+        segment.videoPaths[row] = pool.intern(videoPath);
+        segment.videoOffsets[row] = videoOffset;
+        segment.backgroundPaths[row] = pool.intern(backgroundPath);
+    }
+
+    int remove(String displayName) {
+        Integer id = displayName == null ? null : writableShard(displayName).remove(displayName);
+        if (id == null) {
+            return NO_SONG;
+        }
+        markRemoved(id);
+        return id;
+    }
+
+    boolean compactIfSparse() {
+        int holes = size - liveCount;
+        if (holes < MIN_COMPACTION_HOLES || holes < liveCount) {
+            return false;
+        }
+        Segment[] compacted = new Segment[segmentCount(liveCount)];
+        Map<String, Integer>[] shards = emptyShards();
+        Map<String, Integer>[] keys = emptyShards();
+        // Only the rows that survive go back into the pool, which releases the strings of removed songs.
+        pool.release();
+        int target = 0;
+        for (int id = firstId(); id >= 0; id = nextId(id)) {
+            Segment destination = compacted[target >>> SEGMENT_BITS];
+            if (destination == null) {
+                destination = new Segment();
+                compacted[target >>> SEGMENT_BITS] = destination;
+            }
+            segment(id).copyRow(id & SEGMENT_MASK, destination, target & SEGMENT_MASK);
+            repoolRow(destination, target & SEGMENT_MASK);
+            shards[shardOf(destination.displayNames[target & SEGMENT_MASK])]
+                .put(destination.displayNames[target & SEGMENT_MASK], target);
+            keys[shardOf(destination.songKeys[target & SEGMENT_MASK])]
+                .put(destination.songKeys[target & SEGMENT_MASK], target);
+            target++;
+        }
+        segments = compacted;
+        ownedSegments = new boolean[compacted.length];
+        Arrays.fill(ownedSegments, true);
+        nameShards = shards;
+        Arrays.fill(ownedShards, true);
+        keyShards = keys;
+        Arrays.fill(ownedKeyShards, true);
+        size = target;
+        publishedSize = target;
+        return true;
+    }
+
+    Snapshot publish() {
+        Snapshot snapshot = new Snapshot(segments.clone(), nameShards.clone(), keyShards.clone(), size, liveCount);
+        publishedSize = size;
+        Arrays.fill(ownedSegments, false);
+        Arrays.fill(ownedShards, false);
+        Arrays.fill(ownedKeyShards, false);
+        return snapshot;
+    }
+
+    StringPool.PoolStats poolStats() {
+        return pool.stats();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void repoolRow(Segment segment, int row) {
+        segment.baseNames[row] = pool.retain(segment.baseNames[row]);
+        segment.titles[row] = pool.retain(segment.titles[row]);
+        segment.artists[row] = pool.retain(segment.artists[row]);
+        segment.difficulties[row] = pool.retain(segment.difficulties[row]);
+        segment.mappers[row] = pool.retain(segment.mappers[row]);
+        segment.videoPaths[row] = pool.retain(segment.videoPaths[row]);
+        segment.backgroundPaths[row] = pool.retain(segment.backgroundPaths[row]);
+        segment.baseFolders[row] = pool.retain(segment.baseFolders[row]);
+        segment.tags[row] = pool.retainList((List<String>) segment.tags[row]);
+        segment.creators[row] = pool.retainList((List<String>) segment.creators[row]);
+        segment.beatmapIds[row] = pool.retain(segment.beatmapIds[row]);
+        segment.beatmapSetIds[row] = pool.retain(segment.beatmapSetIds[row]);
+        segment.sources[row] = pool.retain(segment.sources[row]);
+    }
+
+    private void markRemoved(int id) {
+        Segment segment = segment(id);
+        if (!segment.alive[id & SEGMENT_MASK]) {
+            return;
+        }
+        releaseSongKey(id);
+        writableSegment(id).clearRow(id & SEGMENT_MASK);
+        liveCount--;
+    }
+
+    private Segment writableSegment(int id) {
+        int index = id >>> SEGMENT_BITS;
+        if (index >= segments.length) {
+            int capacity = Math.max(index + 1, segments.length + (segments.length >> 1));
+            segments = Arrays.copyOf(segments, capacity);
+            ownedSegments = Arrays.copyOf(ownedSegments, capacity);
+        }
+        if (segments[index] == null) {
+            segments[index] = new Segment();
+            ownedSegments[index] = true;
+        } else if (!ownedSegments[index]) {
+            segments[index] = new Segment(segments[index]);
+            ownedSegments[index] = true;
+        }
+        return segments[index];
+    }
+
+    private Map<String, Integer> writableShard(String displayName) {
+        int shard = shardOf(displayName);
+        if (!ownedShards[shard]) {
+            nameShards[shard] = new HashMap<>(nameShards[shard]);
+            ownedShards[shard] = true;
+        }
+        return nameShards[shard];
+    }
+
+    private Map<String, Integer> writableKeyShard(String songKey) {
+        int shard = shardOf(songKey);
+        if (!ownedKeyShards[shard]) {
+            keyShards[shard] = new HashMap<>(keyShards[shard]);
+            ownedKeyShards[shard] = true;
+        }
+        return keyShards[shard];
+    }
+
+    private static int segmentCount(int rows) {
+        return (rows + SEGMENT_SIZE - 1) >>> SEGMENT_BITS;
+    }
+
+    private static int shardOf(String displayName) {
+        int hash = displayName.hashCode();
+        return (hash ^ (hash >>> 16)) & (NAME_SHARDS - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Integer>[] emptyShards() {
+        Map<String, Integer>[] shards = new Map[NAME_SHARDS];
+        for (int i = 0; i < NAME_SHARDS; i++) {
+            shards[i] = new HashMap<>();
+        }
+        return shards;
+    }
+
+    static final class Snapshot extends CatalogView {
+        private final Segment[] segments;
+        private final Map<String, Integer>[] nameShards;
+        private final Map<String, Integer>[] keyShards;
+        private final int size;
+        private final int liveCount;
+        private final Map<String, String> pathView = new PathView();
+        private final List<String> nameView = new NameView();
+        private volatile int[] liveIds;
+
+        private Snapshot(Segment[] segments, Map<String, Integer>[] nameShards, Map<String, Integer>[] keyShards,
+                         int size, int liveCount) {
+            this.segments = segments;
+            this.nameShards = nameShards;
+            this.keyShards = keyShards;
+            this.size = size;
+            this.liveCount = liveCount;
+        }
+
+        @Override
+        Segment segment(int id) {
+            return segments[id >>> SEGMENT_BITS];
+        }
+
+        @Override
+        Integer lookup(String displayName) {
+            return nameShards[shardOf(displayName)].get(displayName);
+        }
+
+        @Override
+        Integer lookupKey(String songKey) {
+            return keyShards[shardOf(songKey)].get(songKey);
+        }
+
+        @Override
+        int highWaterMark() {
+            return size;
+        }
+
+        @Override
+        int size() {
+            return liveCount;
+        }
+
+        Map<String, String> asPathMap() {
+            return pathView;
+        }
+
+        List<String> asNameList() {
+            return nameView;
+        }
+
+        private int[] liveIds() {
+            int[] ids = liveIds;
+            if (ids == null) {
+                ids = new int[liveCount];
+                int index = 0;
+                for (int id = firstId(); id >= 0; id = nextId(id)) {
+                    ids[index++] = id;
+                }
+                liveIds = ids;
+            }
+            return ids;
+        }
+
+        private final class NameView extends AbstractList<String> implements RandomAccess {
+
+            @Override
+            public String get(int index) {
+                return displayName(liveIds()[index]);
+            }
+
+            @Override
+            public int size() {
+                return liveCount;
+            }
+
+            @Override
+            public boolean contains(Object value) {
+                return value instanceof String name && Snapshot.this.contains(name);
+            }
+
+            @Override
+            public int indexOf(Object value) {
+                int id = value instanceof String name ? idOf(name) : NO_SONG;
+                return id == NO_SONG ? -1 : Math.max(Arrays.binarySearch(liveIds(), id), -1);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int next = firstId();
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        int id = next;
+                        next = nextId(id);
+                        return displayName(id);
+                    }
+                };
+            }
+        }
+
+        private final class PathView extends AbstractMap<String, String> {
+
+            private final Set<Map.Entry<String, String>> entries = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int next = firstId();
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (next < 0) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = next;
+                            next = nextId(id);
+                            return new AbstractMap.SimpleImmutableEntry<>(displayName(id), audioPath(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return liveCount;
+                }
+            };
+
+            @Override
+            public Set<Map.Entry<String, String>> entrySet() {
+                return entries;
+            }
+
+            @Override
+            public int size() {
+                return liveCount;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String name && contains(name);
+            }
+
+            @Override
+            public String get(Object key) {
+                int id = key instanceof String name ? idOf(name) : NO_SONG;
+                return id == NO_SONG ? null : audioPath(id);
+            }
+        }
+    }
+}
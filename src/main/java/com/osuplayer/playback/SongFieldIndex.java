@@ -0,0 +1,361 @@
+package com.osuplayer.playback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+final class SongFieldIndex {
+
+    enum Field {
+        TITLE,
+        ARTIST,
+        MAPPER,
+        DIFFICULTY,
+        SOURCE,
+        TAG
+    }
+
+    enum Flag {
+        VIDEO,
+        BACKGROUND
+    }
+
+    private static final int VALUE_SHARDS = 64;
+    private static final Field[] FIELDS = Field.values();
+    private static final Flag[] FLAGS = Flag.values();
+    private static final Comparator<FacetCount> FACET_ORDER = Comparator
+        .comparingInt(FacetCount::count)
+        .thenComparing(FacetCount::value, Comparator.reverseOrder());
+
+    private Map<String, FieldValue>[][] valuesByField = emptyValues();
+    private final boolean[][] ownedValueShards = new boolean[FIELDS.length][VALUE_SHARDS];
+    private SongBitmap[] songsByFlag = emptyFlags();
+    private final boolean[] ownedFlags = new boolean[FLAGS.length];
+    private BitSet songs = new BitSet();
+    private boolean ownedSongs = true;
+    private int generation;
+    private long version;
+    private Snapshot published;
+
+    SongFieldIndex() {
+        for (boolean[] owned : ownedValueShards) {
+            Arrays.fill(owned, true);
+        }
+        Arrays.fill(ownedFlags, true);
+    }
+
+    void clear() {
+        valuesByField = emptyValues();
+        for (boolean[] owned : ownedValueShards) {
+            Arrays.fill(owned, true);
+        }
+        songsByFlag = emptyFlags();
+        Arrays.fill(ownedFlags, true);
+        songs = new BitSet();
+        ownedSongs = true;
+        version++;
+    }
+
+    void add(int songId, CatalogView catalog) {
+        forEachValue(songId, catalog, (field, value, label) -> {
+            Map<String, FieldValue> shard = writableShard(field, value);
+            FieldValue fieldValue = shard.get(value);
+            if (fieldValue == null) {
+                fieldValue = new FieldValue(label, generation);
+                shard.put(value, fieldValue);
+            } else if (fieldValue.generation != generation) {
+                fieldValue = fieldValue.copy(generation);
+                shard.put(value, fieldValue);
+            }
+            fieldValue.songs.add(songId);
+        });
+        for (Flag flag : FLAGS) {
+            if (hasFlag(songId, catalog, flag)) {
+                writableFlag(flag).add(songId);
+            }
+        }
+        writableSongs().set(songId);
+        version++;
+    }
+
+    void remove(int songId, CatalogView catalog) {
+        if (!songs.get(songId)) {
+            return;
+        }
+        forEachValue(songId, catalog, (field, value, label) -> {
+            Map<String, FieldValue> shard = writableShard(field, value);
+            FieldValue fieldValue = shard.get(value);
+            if (fieldValue == null) {
+                return;
+            }
+            if (fieldValue.generation != generation) {
+                fieldValue = fieldValue.copy(generation);
+                shard.put(value, fieldValue);
+            }
+            fieldValue.songs.remove(songId);
+            if (fieldValue.songs.isEmpty()) {
+                shard.remove(value);
+            }
+        });
+        for (Flag flag : FLAGS) {
+            if (songsByFlag[flag.ordinal()].contains(songId)) {
+                writableFlag(flag).remove(songId);
+            }
+        }
+        writableSongs().clear(songId);
+        version++;
+    }
+
+    void updateFlags(int songId, CatalogView catalog) {
+        if (!songs.get(songId)) {
+            return;
+        }
+        for (Flag flag : FLAGS) {
+            boolean flagged = hasFlag(songId, catalog, flag);
+            if (flagged == songsByFlag[flag.ordinal()].contains(songId)) {
+                continue;
+            }
+            if (flagged) {
+                writableFlag(flag).add(songId);
+            } else {
+                writableFlag(flag).remove(songId);
+            }
+            version++;
+        }
+    }
+
+    Snapshot publish() {
+        if (published == null || published.version != version) {
+            Map<String, FieldValue>[][] values = valuesByField.clone();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values[i].clone();
+            }
+            published = new Snapshot(values, songsByFlag.clone(), songs, version);
+            for (boolean[] owned : ownedValueShards) {
+                Arrays.fill(owned, false);
+            }
+            Arrays.fill(ownedFlags, false);
+            ownedSongs = false;
+            generation++;
+        }
+        return published;
+    }
+
+    private Map<String, FieldValue> writableShard(Field field, String value) {
+        int shard = shardOf(value);
+        Map<String, FieldValue>[] shards = valuesByField[field.ordinal()];
+        if (!ownedValueShards[field.ordinal()][shard]) {
+            shards[shard] = new HashMap<>(shards[shard]);
+            ownedValueShards[field.ordinal()][shard] = true;
+        }
+        return shards[shard];
+    }
+
+    private SongBitmap writableFlag(Flag flag) {
+        if (!ownedFlags[flag.ordinal()]) {
+            songsByFlag[flag.ordinal()] = new SongBitmap(songsByFlag[flag.ordinal()]);
+            ownedFlags[flag.ordinal()] = true;
+        }
+        return songsByFlag[flag.ordinal()];
+    }
+
+    private BitSet writableSongs() {
+        if (!ownedSongs) {
+            songs = (BitSet) songs.clone();
+            ownedSongs = true;
+        }
+        return songs;
+    }
+
+    private static int shardOf(String value) {
+        int hash = value.hashCode();
+        return (hash ^ (hash >>> 16)) & (VALUE_SHARDS - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, FieldValue>[][] emptyValues() {
+        Map<String, FieldValue>[][] values = new Map[FIELDS.length][VALUE_SHARDS];
+        for (Map<String, FieldValue>[] shards : values) {
+            for (int i = 0; i < VALUE_SHARDS; i++) {
+                shards[i] = new HashMap<>();
+            }
+        }
+        return values;
+    }
+
+    private static SongBitmap[] emptyFlags() {
+        SongBitmap[] flags = new SongBitmap[FLAGS.length];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = new SongBitmap();
+        }
+        return flags;
+    }
+
+    private static void offer(PriorityQueue<FacetCount> best, FacetCount candidate, int limit) {
+        if (candidate.count() == 0 || limit <= 0) {
+            return;
+        }
+        if (best.size() < limit) {
+            best.add(candidate);
+        } else if (FACET_ORDER.compare(candidate, best.peek()) > 0) {
+            best.poll();
+            best.add(candidate);
+        }
+    }
+
+    private static List<FacetCount> drain(PriorityQueue<FacetCount> best) {
+        List<FacetCount> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static void forEachValue(int songId, CatalogView catalog, ValueConsumer consumer) {
+        accept(consumer, Field.TITLE, catalog.title(songId));
+        accept(consumer, Field.ARTIST, catalog.artist(songId));
+        accept(consumer, Field.MAPPER, catalog.mapper(songId));
+        accept(consumer, Field.DIFFICULTY, catalog.difficulty(songId));
+        accept(consumer, Field.SOURCE, catalog.source(songId));
+        List<String> tags = catalog.tags(songId);
+        if (tags != null) {
+            for (String tag : tags) {
+                accept(consumer, Field.TAG, tag);
+            }
+        }
+    }
+
+    private static void accept(ValueConsumer consumer, Field field, String raw) {
+        String value = SearchKeys.normalize(raw);
+        if (!value.isEmpty()) {
+            consumer.accept(field, value, raw.trim());
+        }
+    }
+
+    private static boolean hasFlag(int songId, CatalogView catalog, Flag flag) {
+        String path = switch (flag) {
+            case VIDEO -> catalog.videoPath(songId);
+            case BACKGROUND -> catalog.backgroundPath(songId);
+        };
+        return path != null && !path.isBlank();
+    }
+
+    @FunctionalInterface
+    private interface ValueConsumer {
+        void accept(Field field, String value, String label);
+    }
+
+    record FacetCount(String value, String label, int count) { }
+
+    static final class Snapshot {
+        private final Map<String, FieldValue>[][] valuesByField;
+        private final SongBitmap[] songsByFlag;
+        private final BitSet songs;
+        private final long version;
+
+        private Snapshot(Map<String, FieldValue>[][] valuesByField, SongBitmap[] songsByFlag, BitSet songs,
+                         long version) {
+            this.valuesByField = valuesByField;
+            this.songsByFlag = songsByFlag;
+            this.songs = songs;
+            this.version = version;
+        }
+
+        long version() {
+            return version;
+        }
+
+        BitSet allSongs() {
+            return (BitSet) songs.clone();
+        }
+
+        BitSet matchValue(Field field, String value) {
+            BitSet matches = new BitSet();
+            for (Map<String, FieldValue> shard : valuesByField[field.ordinal()]) {
+                for (Map.Entry<String, FieldValue> entry : shard.entrySet()) {
+                    if (entry.getKey().contains(value)) {
+                        entry.getValue().songs.orInto(matches);
+                    }
+                }
+            }
+            return matches;
+        }
+
+        BitSet matchAny(Field field, Collection<String> values) {
+            BitSet matches = new BitSet();
+            Map<String, FieldValue>[] shards = valuesByField[field.ordinal()];
+            for (String value : values) {
+                FieldValue fieldValue = shards[shardOf(value)].get(value);
+                if (fieldValue != null) {
+                    fieldValue.songs.orInto(matches);
+                }
+            }
+            return matches;
+        }
+
+        BitSet matchFlags(Collection<Flag> flags) {
+            BitSet matches = new BitSet();
+            for (Flag flag : flags) {
+                songsByFlag[flag.ordinal()].orInto(matches);
+            }
+            return matches;
+        }
+
+        List<FacetCount> topValues(Field field, BitSet results, int limit) {
+            long[] words = results == null ? null : results.toLongArray();
+            PriorityQueue<FacetCount> best = new PriorityQueue<>(FACET_ORDER);
+            for (Map<String, FieldValue> shard : valuesByField[field.ordinal()]) {
+                for (Map.Entry<String, FieldValue> entry : shard.entrySet()) {
+                    SongBitmap valueSongs = entry.getValue().songs;
+                    int count = words == null ? valueSongs.cardinality() : valueSongs.andCardinality(words);
+                    offer(best, new FacetCount(entry.getKey(), entry.getValue().label, count), limit);
+                }
+            }
+            return drain(best);
+        }
+
+        List<FacetCount> flagCounts(BitSet results) {
+            long[] words = results == null ? null : results.toLongArray();
+            List<FacetCount> counts = new ArrayList<>(FLAGS.length);
+            for (Flag flag : FLAGS) {
+                SongBitmap flagged = songsByFlag[flag.ordinal()];
+                int count = words == null ? flagged.cardinality() : flagged.andCardinality(words);
+                if (count > 0) {
+                    String value = flag.name().toLowerCase(Locale.ROOT);
+                    counts.add(new FacetCount(value, value, count));
+                }
+            }
+            counts.sort(FACET_ORDER.reversed());
+            return counts;
+        }
+    }
+
+    private static final class FieldValue {
+        private final String label;
+        private final int generation;
+        private final SongBitmap songs;
+
+        FieldValue(String label, int generation) {
+            this(label, generation, new SongBitmap());
+        }
+
+        private FieldValue(String label, int generation, SongBitmap songs) {
+            this.label = label;
+            this.generation = generation;
+            this.songs = songs;
+        }
+
+        FieldValue copy(int newGeneration) {
+            return new FieldValue(label, newGeneration, new SongBitmap(songs));
+        }
+    }
+}
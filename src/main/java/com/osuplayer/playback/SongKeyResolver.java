@@ -0,0 +1,10 @@
+package com.osuplayer.playback;
+
+public interface SongKeyResolver {
+
+    String songKeyOf(String songName);
+
+    String songNameOf(String songKey);
+
+    long libraryVersion();
+}
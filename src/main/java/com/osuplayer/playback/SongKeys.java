@@ -0,0 +1,115 @@
+package com.osuplayer.playback;
+
+import java.util.Locale;
+
+public final class SongKeys {
+
+    private static final String BEATMAP_PREFIX = "b:";
+    private static final String AUDIO_PREFIX = "s:";
+    private static final char DUPLICATE_SEPARATOR = '#';
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SongKeys() {}
+
+    static String beatmapKey(String beatmapId, String beatmapSetId) {
+        String id = beatmapId == null ? "" : beatmapId.trim();
+        if (!isDigits(id) || isZero(id) || id.equals(beatmapSetId == null ? null : beatmapSetId.trim())) {
+            return null;
+        }
+        return BEATMAP_PREFIX + id;
+    }
+
+    static String audioKey(String beatmapSetId, String baseFolder, String audioPath) {
+        String setId = beatmapSetId == null ? "" : beatmapSetId.trim();
+        if (!isDigits(setId)) {
+            setId = "0";
+        }
+        return AUDIO_PREFIX + setId + ':' + String.format(Locale.ROOT, "%016x", fnv1a(relativeAudioPath(baseFolder, audioPath)));
+    }
+
+    static String duplicateKey(String key, int occurrence) {
+        return key + DUPLICATE_SEPARATOR + occurrence;
+    }
+
+    static int variantSlot(String baseName, String difficulty, String mapper) {
+        String content = (baseName == null ? "" : baseName) + '\n'
+            + (difficulty == null ? "" : difficulty) + '\n'
+            + (mapper == null ? "" : mapper);
+        return (int) (fnv1a(content) >>> 33);
+    }
+
+    public static boolean isKey(String value) {
+        if (value == null) {
+            return false;
+        }
+        int end = value.indexOf(DUPLICATE_SEPARATOR);
+        if (end >= 0 && !isDigits(value.substring(end + 1))) {
+            return false;
+        }
+        String key = end < 0 ? value : value.substring(0, end);
+        if (key.startsWith(BEATMAP_PREFIX)) {
+            return isDigits(key.substring(BEATMAP_PREFIX.length()));
+        }
+        if (!key.startsWith(AUDIO_PREFIX)) {
+            return false;
+        }
+        int separator = key.indexOf(':', AUDIO_PREFIX.length());
+        return separator > AUDIO_PREFIX.length()
+            && isDigits(key.substring(AUDIO_PREFIX.length(), separator))
+            && key.length() - separator - 1 == 16
+            && isHex(key.substring(separator + 1));
+    }
+
+    private static String relativeAudioPath(String baseFolder, String audioPath) {
+        String audio = audioPath == null ? "" : audioPath.replace('\\', '/');
+        String folder = baseFolder == null ? "" : baseFolder.replace('\\', '/');
+        while (folder.endsWith("/")) {
+            folder = folder.substring(0, folder.length() - 1);
+        }
+        String folderName = folder.substring(folder.lastIndexOf('/') + 1);
+        String relative = !folder.isEmpty() && audio.startsWith(folder + "/")
+            ? audio.substring(folder.length() + 1)
+            : audio.substring(audio.lastIndexOf('/') + 1);
+        return (folderName + '/' + relative).toLowerCase(Locale.ROOT);
+    }
+
+    private static long fnv1a(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean isDigits(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,6 +1,5 @@
 package com.osuplayer.playback;
 
-import java.util.List;
 import java.util.function.Consumer;
 
 import com.osuplayer.exporting.ExportManager;
@@ -225,8 +224,7 @@ public class SongListCell extends ListCell<String> {
         boolean inAnyPlaylist = false;
         for (String playlistName : playlistManager.getAllPlaylists()) {
             if (!playlistName.equalsIgnoreCase(PlaylistManager.PLAYLIST_ALL)) {
-                List<String> list = playlistManager.getPlaylist(playlistName);
-                if (list != null && list.contains(song)) {
+                if (playlistManager.contains(playlistName, song)) {
                     inAnyPlaylist = true;
                     MenuItem removeFromItem = new MenuItem(playlistName);
                     LanguageBindings.bindMenuItem(removeFromItem, playlistName);
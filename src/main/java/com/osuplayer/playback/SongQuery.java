@@ -0,0 +1,196 @@
+package com.osuplayer.playback;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+final class SongQuery {
+
+    private static final Map<String, SongFieldIndex.Field> FIELDS = Map.ofEntries(
+        Map.entry("title", SongFieldIndex.Field.TITLE),
+        Map.entry("artist", SongFieldIndex.Field.ARTIST),
+        Map.entry("mapper", SongFieldIndex.Field.MAPPER),
+        Map.entry("creator", SongFieldIndex.Field.MAPPER),
+        Map.entry("diff", SongFieldIndex.Field.DIFFICULTY),
+        Map.entry("difficulty", SongFieldIndex.Field.DIFFICULTY),
+        Map.entry("source", SongFieldIndex.Field.SOURCE),
+        Map.entry("tag", SongFieldIndex.Field.TAG),
+        Map.entry("tags", SongFieldIndex.Field.TAG)
+    );
+
+    private static final Map<String, SongFieldIndex.Flag> FLAGS = Map.of(
+        "video", SongFieldIndex.Flag.VIDEO,
+        "bg", SongFieldIndex.Flag.BACKGROUND,
+        "background", SongFieldIndex.Flag.BACKGROUND
+    );
+
+    private final List<String> textTokens;
+    private final List<Clause> included;
+    private final List<Clause> excluded;
+
+    private SongQuery(List<String> textTokens, List<Clause> included, List<Clause> excluded) {
+        this.textTokens = List.copyOf(textTokens);
+        this.included = List.copyOf(included);
+        this.excluded = List.copyOf(excluded);
+    }
+
+    static SongQuery parse(String query) {
+        List<String> textTokens = new ArrayList<>();
+        List<Clause> included = new ArrayList<>();
+        List<Clause> excluded = new ArrayList<>();
+        if (query != null) {
+            for (String term : splitTerms(query)) {
+                boolean negated = term.length() > 1 && term.charAt(0) == '-';
+                Clause clause = parseClause(negated ? term.substring(1) : term);
+                if (clause == null) {
+                    textTokens.addAll(SongSearchIndex.tokenize(term.replace("\"", " ")));
+                } else if (negated) {
+                    excluded.add(clause);
+                } else {
+                    included.add(clause);
+                }
+            }
+        }
+        return new SongQuery(textTokens, included, excluded);
+    }
+
+    SongQuery withFacets(Map<MusicManager.FacetField, Set<String>> facets) {
+        if (facets == null || facets.isEmpty()) {
+            return this;
+        }
+        List<Clause> combined = new ArrayList<>(included);
+        for (Map.Entry<MusicManager.FacetField, Set<String>> facet : facets.entrySet()) {
+            Set<String> values = facet.getValue();
+            if (values == null || values.isEmpty()) {
+                continue;
+            }
+            combined.add(switch (facet.getKey()) {
+                case ARTIST -> new AnyValueClause(SongFieldIndex.Field.ARTIST, Set.copyOf(values));
+                case MAPPER -> new AnyValueClause(SongFieldIndex.Field.MAPPER, Set.copyOf(values));
+                case TAG -> new AnyValueClause(SongFieldIndex.Field.TAG, Set.copyOf(values));
+                case HAS -> new AnyFlagClause(flagsOf(values));
+            });
+        }
+        return new SongQuery(textTokens, combined, excluded);
+    }
+
+    boolean isEmpty() {
+        return textTokens.isEmpty() && included.isEmpty() && excluded.isEmpty();
+    }
+
+    List<String> textTokens() {
+        return textTokens;
+    }
+
+    boolean hasSameClauses(SongQuery other) {
+        return other != null && included.equals(other.included) && excluded.equals(other.excluded);
+    }
+
+    BitSet evaluate(SongSearchIndex.Snapshot textIndex, SongFieldIndex.Snapshot fieldIndex, boolean fuzzy) {
+        BitSet result = textTokens.isEmpty() ? null : textIndex.match(textTokens, fuzzy).ids();
+        for (Clause clause : included) {
+            if (result != null && result.isEmpty()) {
+                return result;
+            }
+            BitSet matches = clause.evaluate(fieldIndex);
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+        }
+        if (result == null) {
+            result = fieldIndex.allSongs();
+        }
+        for (Clause clause : excluded) {
+            if (result.isEmpty()) {
+                break;
+            }
+            result.andNot(clause.evaluate(fieldIndex));
+        }
+        return result;
+    }
+
+    private static Clause parseClause(String term) {
+        int colon = term.indexOf(':');
+        if (colon <= 0 || colon == term.length() - 1) {
+            return null;
+        }
+        String key = term.substring(0, colon).toLowerCase(Locale.ROOT);
+        String rawValue = term.substring(colon + 1).replace("\"", " ");
+        if (key.equals("has")) {
+            SongFieldIndex.Flag flag = FLAGS.get(rawValue.trim().toLowerCase(Locale.ROOT));
+            return flag == null ? null : new AnyFlagClause(EnumSet.of(flag));
+        }
+        SongFieldIndex.Field field = FIELDS.get(key);
+        if (field == null) {
+            return null;
+        }
+        String value = SearchKeys.normalize(rawValue.trim());
+        return value.isEmpty() ? null : new ValueClause(field, value);
+    }
+
+    private static Set<SongFieldIndex.Flag> flagsOf(Set<String> values) {
+        Set<SongFieldIndex.Flag> flags = EnumSet.noneOf(SongFieldIndex.Flag.class);
+        for (String value : values) {
+            SongFieldIndex.Flag flag = FLAGS.get(value.toLowerCase(Locale.ROOT));
+            if (flag != null) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+
+    private static List<String> splitTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                current.append(c);
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (current.length() > 0) {
+                    terms.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            terms.add(current.toString());
+        }
+        return terms;
+    }
+
+    private sealed interface Clause permits ValueClause, AnyValueClause, AnyFlagClause {
+        BitSet evaluate(SongFieldIndex.Snapshot fieldIndex);
+    }
+
+    private record ValueClause(SongFieldIndex.Field field, String value) implements Clause {
+        @Override
+        public BitSet evaluate(SongFieldIndex.Snapshot fieldIndex) {
+            return fieldIndex.matchValue(field, value);
+        }
+    }
+
+    private record AnyValueClause(SongFieldIndex.Field field, Set<String> values) implements Clause {
+        @Override
+        public BitSet evaluate(SongFieldIndex.Snapshot fieldIndex) {
+            return fieldIndex.matchAny(field, values);
+        }
+    }
+
+    private record AnyFlagClause(Set<SongFieldIndex.Flag> flags) implements Clause {
+        @Override
+        public BitSet evaluate(SongFieldIndex.Snapshot fieldIndex) {
+            return fieldIndex.matchFlags(flags);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.osuplayer.playback;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class SongSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int REFINE_SCAN_LIMIT = 4096;
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int TRIGRAM_SHARDS = 256;
+
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private WordChunk[] wordChunks = new WordChunk[0];
+    private boolean[] ownedWordChunks = new boolean[0];
+    private int wordCount;
+    private Map<Long, IntList>[] wordsByTrigram = emptyShards();
+    private final boolean[] ownedTrigramShards = new boolean[TRIGRAM_SHARDS];
+    private int[][][] wordsBySong = new int[0][][];
+    private boolean[] ownedSongChunks = new boolean[0];
+    private FuzzyTermDictionary fuzzyTerms = new FuzzyTermDictionary();
+    private int generation;
+    private long version;
+    private Snapshot published;
+
+    SongSearchIndex() {
+        Arrays.fill(ownedTrigramShards, true);
+    }
+
+    void clear() {
+        wordIds.clear();
+        wordChunks = new WordChunk[0];
+        ownedWordChunks = new boolean[0];
+        wordCount = 0;
+        wordsByTrigram = emptyShards();
+        Arrays.fill(ownedTrigramShards, true);
+        wordsBySong = new int[0][][];
+        ownedSongChunks = new boolean[0];
+        fuzzyTerms = new FuzzyTermDictionary();
+        version++;
+    }
+
+    void add(int songId, String searchKey) {
+        Set<Integer> songWords = new LinkedHashSet<>();
+        if (searchKey != null) {
+            for (String word : splitWords(searchKey)) {
+                songWords.add(wordId(word));
+            }
+        }
+        int[] ids = new int[songWords.size()];
+        int i = 0;
+        for (Integer wordId : songWords) {
+            ids[i++] = wordId;
+            writablePosting(wordId).add(songId);
+        }
+        writableSongChunk(songId)[songId & CHUNK_MASK] = ids;
+        version++;
+    }
+
+    void remove(int songId) {
+        int chunk = songId >>> CHUNK_BITS;
+        if (songId < 0 || chunk >= wordsBySong.length || wordsBySong[chunk] == null
+                || wordsBySong[chunk][songId & CHUNK_MASK] == null) {
+            return;
+        }
+        for (int wordId : wordsBySong[chunk][songId & CHUNK_MASK]) {
+            writablePosting(wordId).remove(songId);
+        }
+        writableSongChunk(songId)[songId & CHUNK_MASK] = null;
+        version++;
+    }
+
+    Snapshot publish() {
+        if (published == null || published.version != version) {
+            published = new Snapshot(wordChunks.clone(), wordCount, wordsByTrigram.clone(), wordsBySong.clone(),
+                fuzzyTerms, version);
+            Arrays.fill(ownedWordChunks, false);
+            Arrays.fill(ownedTrigramShards, false);
+            Arrays.fill(ownedSongChunks, false);
+            generation++;
+        }
+        return published;
+    }
+
+    static List<String> tokenize(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        return splitWords(SearchKeys.normalize(query));
+    }
+
+    private int wordId(String word) {
+        Integer existing = wordIds.get(word);
+        if (existing != null) {
+            return existing;
+        }
+        int id = wordCount++;
+        WordChunk chunk = writableWordChunk(id);
+        chunk.words[id & CHUNK_MASK] = word;
+        chunk.songs[id & CHUNK_MASK] = new IntList(generation);
+        wordIds.put(word, id);
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            long trigram = trigramKey(word, i);
+            Map<Long, IntList> shard = writableTrigramShard(trigram);
+            IntList posting = shard.get(trigram);
+            if (posting == null || posting.generation != generation) {
+                posting = posting == null ? new IntList(generation) : posting.copy(generation);
+                shard.put(trigram, posting);
+            }
+            if (posting.isEmpty() || posting.last() != id) {
+                posting.add(id);
+            }
+        }
+        return id;
+    }
+
+    private IntList writablePosting(int wordId) {
+        WordChunk chunk = writableWordChunk(wordId);
+        IntList songs = chunk.songs[wordId & CHUNK_MASK];
+        if (songs.generation != generation) {
+            songs = songs.copy(generation);
+            chunk.songs[wordId & CHUNK_MASK] = songs;
+        }
+        return songs;
+    }
+
+    private WordChunk writableWordChunk(int wordId) {
+        int index = wordId >>> CHUNK_BITS;
+        if (index >= wordChunks.length) {
+            int capacity = Math.max(index + 1, wordChunks.length + (wordChunks.length >> 1));
+            wordChunks = Arrays.copyOf(wordChunks, capacity);
+            ownedWordChunks = Arrays.copyOf(ownedWordChunks, capacity);
+        }
+        if (wordChunks[index] == null) {
+            wordChunks[index] = new WordChunk();
+            ownedWordChunks[index] = true;
+        } else if (!ownedWordChunks[index]) {
+            wordChunks[index] = new WordChunk(wordChunks[index]);
+            ownedWordChunks[index] = true;
+        }
+        return wordChunks[index];
+    }
+
+    private Map<Long, IntList> writableTrigramShard(long trigram) {
+        int shard = shardOf(trigram);
+        if (!ownedTrigramShards[shard]) {
+            wordsByTrigram[shard] = new HashMap<>(wordsByTrigram[shard]);
+            ownedTrigramShards[shard] = true;
+        }
+        return wordsByTrigram[shard];
+    }
+
+    private int[][] writableSongChunk(int songId) {
+        int index = songId >>> CHUNK_BITS;
+        if (index >= wordsBySong.length) {
+            int capacity = Math.max(index + 1, wordsBySong.length + (wordsBySong.length >> 1));
+            wordsBySong = Arrays.copyOf(wordsBySong, capacity);
+            ownedSongChunks = Arrays.copyOf(ownedSongChunks, capacity);
+        }
+        if (wordsBySong[index] == null) {
+            wordsBySong[index] = new int[CHUNK_SIZE][];
+            ownedSongChunks[index] = true;
+        } else if (!ownedSongChunks[index]) {
+            wordsBySong[index] = wordsBySong[index].clone();
+            ownedSongChunks[index] = true;
+        }
+        return wordsBySong[index];
+    }
+
+    private static int shardOf(long trigram) {
+        int hash = Long.hashCode(trigram);
+        return (hash ^ (hash >>> 16)) & (TRIGRAM_SHARDS - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<Long, IntList>[] emptyShards() {
+        Map<Long, IntList>[] shards = new Map[TRIGRAM_SHARDS];
+        for (int i = 0; i < TRIGRAM_SHARDS; i++) {
+            shards[i] = new HashMap<>();
+        }
+        return shards;
+    }
+
+    private static long trigramKey(String text, int offset) {
+        return ((long) text.charAt(offset) << 32)
+            | ((long) text.charAt(offset + 1) << 16)
+            | text.charAt(offset + 2);
+    }
+
+    private static List<String> splitWords(String text) {
+        List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                if (start >= 0) {
+                    result.add(text.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            result.add(text.substring(start));
+        }
+        return result;
+    }
+
+    record Matches(long version, BitSet ids) { }
+
+    static final class Snapshot {
+        private final WordChunk[] wordChunks;
+        private final int wordCount;
+        private final Map<Long, IntList>[] wordsByTrigram;
+        private final int[][][] wordsBySong;
+        private final FuzzyTermDictionary fuzzyTerms;
+        private final long version;
+        private final List<String> words = new WordView();
+
+        private Snapshot(WordChunk[] wordChunks, int wordCount, Map<Long, IntList>[] wordsByTrigram,
+                         int[][][] wordsBySong, FuzzyTermDictionary fuzzyTerms, long version) {
+            this.wordChunks = wordChunks;
+            this.wordCount = wordCount;
+            this.wordsByTrigram = wordsByTrigram;
+            this.wordsBySong = wordsBySong;
+            this.fuzzyTerms = fuzzyTerms;
+            this.version = version;
+        }
+
+        long version() {
+            return version;
+        }
+
+        Matches match(List<String> tokens, boolean fuzzy) {
+            BitSet result = null;
+            for (String token : tokens) {
+                BitSet tokenMatches = matchToken(token, fuzzy);
+                if (result == null) {
+                    result = tokenMatches;
+                } else {
+                    result.and(tokenMatches);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return new Matches(version, result == null ? new BitSet() : result);
+        }
+
+        Matches refine(Matches previous, List<String> tokens) {
+            if (previous == null || previous.version() != version) {
+                return null;
+            }
+            BitSet result = (BitSet) previous.ids().clone();
+            for (String token : tokens) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                if (result.cardinality() <= REFINE_SCAN_LIMIT) {
+                    for (int songId = result.nextSetBit(0); songId >= 0; songId = result.nextSetBit(songId + 1)) {
+                        if (!songContains(songId, token)) {
+                            result.clear(songId);
+                        }
+                    }
+                } else {
+                    result.and(matchToken(token, false));
+                }
+            }
+            return new Matches(version, result);
+        }
+
+        private BitSet matchToken(String token, boolean fuzzy) {
+            BitSet matches = new BitSet();
+            if (fuzzy) {
+                fuzzyTerms.forEachMatch(token, words, wordId -> songsOf(wordId).setBitsIn(matches));
+            }
+            if (token.length() < GRAM) {
+                for (int wordId = 0; wordId < wordCount; wordId++) {
+                    IntList songs = songsOf(wordId);
+                    if (!songs.isEmpty() && wordOf(wordId).contains(token)) {
+                        songs.setBitsIn(matches);
+                    }
+                }
+                return matches;
+            }
+            IntList candidates = null;
+            for (int i = 0; i + GRAM <= token.length(); i++) {
+                long trigram = trigramKey(token, i);
+                IntList posting = wordsByTrigram[shardOf(trigram)].get(trigram);
+                if (posting == null) {
+                    return matches;
+                }
+                if (candidates == null || posting.size < candidates.size) {
+                    candidates = posting;
+                }
+            }
+            for (int i = 0; i < candidates.size; i++) {
+                int wordId = candidates.values[i];
+                IntList songs = songsOf(wordId);
+                if (!songs.isEmpty() && wordOf(wordId).contains(token)) {
+                    songs.setBitsIn(matches);
+                }
+            }
+            return matches;
+        }
+
+        private boolean songContains(int songId, String token) {
+            int chunk = songId >>> CHUNK_BITS;
+            int[] songWords = chunk < wordsBySong.length && wordsBySong[chunk] != null
+                ? wordsBySong[chunk][songId & CHUNK_MASK]
+                : null;
+            if (songWords == null) {
+                return false;
+            }
+            for (int wordId : songWords) {
+                if (wordOf(wordId).contains(token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String wordOf(int wordId) {
+            return wordChunks[wordId >>> CHUNK_BITS].words[wordId & CHUNK_MASK];
+        }
+
+        private IntList songsOf(int wordId) {
+            return wordChunks[wordId >>> CHUNK_BITS].songs[wordId & CHUNK_MASK];
+        }
+
+        private final class WordView extends AbstractList<String> {
+            @Override
+            public String get(int index) {
+                return wordOf(index);
+            }
+
+            @Override
+            public int size() {
+                return wordCount;
+            }
+        }
+    }
+
+    private static final class WordChunk {
+        final String[] words;
+        final IntList[] songs;
+
+        WordChunk() {
+            words = new String[CHUNK_SIZE];
+            songs = new IntList[CHUNK_SIZE];
+        }
+
+        WordChunk(WordChunk other) {
+            words = other.words.clone();
+            songs = other.songs.clone();
+        }
+    }
+
+    private static final class IntList {
+        private final int generation;
+        private int[] values;
+        private int size;
+
+        IntList(int generation) {
+            this.generation = generation;
+            this.values = new int[2];
+        }
+
+        private IntList(int generation, int[] values, int size) {
+            this.generation = generation;
+            this.values = values;
+            this.size = size;
+        }
+
+        IntList copy(int newGeneration) {
+            return new IntList(newGeneration, Arrays.copyOf(values, Math.max(2, size)), size);
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int last() {
+            return values[size - 1];
+        }
+
+        void setBitsIn(BitSet target) {
+            for (int i = 0; i < size; i++) {
+                target.set(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.osuplayer.playback;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Entries are not reference counted: a removed row's values stay pooled until clear(), which the
+// catalog calls when it is reset, or release(), which it calls when it compacts before re-adding
+// only the rows still alive.
+final class StringPool {
+
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int LIST_OVERHEAD_BYTES = 32;
+    private static final int REFERENCE_BYTES = 4;
+
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final Map<List<String>, List<String>> lists = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    String intern(String value) {
+        return intern(value, true);
+    }
+
+    List<String> internList(List<String> values) {
+        return internList(values, true);
+    }
+
+    // Puts a value that is already shared back after release(); it is not a lookup, so the stats stay as they were.
+    String retain(String value) {
+        return intern(value, false);
+    }
+
+    List<String> retainList(List<String> values) {
+        return internList(values, false);
+    }
+
+    private String intern(String value, boolean counted) {
+        if (value == null) {
+            return null;
+        }
+        if (counted) {
+            lookups.increment();
+        }
+        String pooled = strings.putIfAbsent(value, value);
+        if (pooled == null) {
+            return value;
+        }
+        if (counted && pooled != value) {
+            hits.increment();
+            bytesSaved.add(estimateBytes(value));
+        }
+        return pooled;
+    }
+
+    private List<String> internList(List<String> values, boolean counted) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> existing = lists.get(values);
+        if (counted) {
+            lookups.increment();
+        }
+        if (existing != null) {
+            if (counted && existing != values) {
+                hits.increment();
+                bytesSaved.add(LIST_OVERHEAD_BYTES + (long) REFERENCE_BYTES * values.size());
+                for (String value : values) {
+                    if (value != null) {
+                        bytesSaved.add(estimateBytes(value));
+                    }
+                }
+            }
+            return existing;
+        }
+        String[] pooled = new String[values.size()];
+        int count = 0;
+        for (String value : values) {
+            if (value != null) {
+                pooled[count++] = intern(value, counted);
+            }
+        }
+        List<String> immutable = List.of(count == pooled.length ? pooled : Arrays.copyOf(pooled, count));
+        List<String> raced = lists.putIfAbsent(immutable, immutable);
+        return raced == null ? immutable : raced;
+    }
+
+    void release() {
+        strings.clear();
+        lists.clear();
+    }
+
+    void clear() {
+        release();
+        lookups.reset();
+        hits.reset();
+        bytesSaved.reset();
+    }
+
+    PoolStats stats() {
+        return new PoolStats(lookups.sum(), hits.sum(), bytesSaved.sum(), strings.size(), lists.size());
+    }
+
+    private static long estimateBytes(String value) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return STRING_OVERHEAD_BYTES + (long) value.length() * bytesPerChar;
+    }
+
+    record PoolStats(long lookups, long hits, long bytesSaved, int uniqueStrings, int uniqueLists) { }
+}
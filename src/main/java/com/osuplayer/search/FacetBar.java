@@ -0,0 +1,132 @@
+package com.osuplayer.search;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.osuplayer.lang.I18n;
+import com.osuplayer.lang.LanguageBindings;
+import com.osuplayer.playback.MusicManager;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
+import javafx.scene.layout.HBox;
+
+public class FacetBar {
+
+    private static final int FACET_VALUE_LIMIT = 15;
+
+    private final SearchManager searchManager;
+    private final Map<MusicManager.FacetField, MenuButton> buttons = new EnumMap<>(MusicManager.FacetField.class);
+    private final Button clearButton = new Button();
+    private final HBox bar = new HBox(6);
+
+    public FacetBar(SearchManager searchManager) {
+        this.searchManager = searchManager;
+        for (MusicManager.FacetField field : MusicManager.FacetField.values()) {
+            MenuButton button = new MenuButton();
+            button.setFocusTraversable(false);
+            // Counts follow the current results, so the menu is only filled in when it is opened.
+            button.setOnShowing(evt -> populate(field, button));
+            buttons.put(field, button);
+            bar.getChildren().add(button);
+        }
+        LanguageBindings.bindLabeled(clearButton, "Quitar filtros");
+        clearButton.setFocusTraversable(false);
+        clearButton.setOnAction(evt -> {
+            searchManager.setFacetSelection(Map.of());
+            refresh();
+        });
+        bar.getChildren().add(clearButton);
+        bar.setPadding(new Insets(0, 0, 6, 0));
+        bar.setAlignment(Pos.CENTER_LEFT);
+
+        searchManager.setOnResultsChanged(this::refresh);
+        refresh();
+    }
+
+    public Node getNode() {
+        return bar;
+    }
+
+    public void refresh() {
+        Map<MusicManager.FacetField, Set<String>> selection = searchManager.getFacetSelection();
+        buttons.forEach((field, button) -> {
+            int selected = selection.getOrDefault(field, Set.of()).size();
+            String label = fieldLabel(field);
+            button.setText(selected == 0 ? label : label + " (" + selected + ")");
+        });
+        clearButton.setDisable(selection.isEmpty());
+    }
+
+    private void populate(MusicManager.FacetField field, MenuButton button) {
+        Set<String> selected = searchManager.getFacetSelection().getOrDefault(field, Set.of());
+        List<MusicManager.FacetValue> values = searchManager.topFacetValues(field, FACET_VALUE_LIMIT);
+        Set<String> listed = new HashSet<>();
+        button.getItems().clear();
+        for (MusicManager.FacetValue value : values) {
+            listed.add(value.value());
+            button.getItems().add(createItem(field, value.value(),
+                valueLabel(field, value.value(), value.label()) + " (" + value.count() + ")",
+                selected.contains(value.value())));
+        }
+        for (String value : selected) {
+            if (!listed.contains(value)) {
+                button.getItems().add(createItem(field, value, valueLabel(field, value, value), true));
+            }
+        }
+        if (button.getItems().isEmpty()) {
+            MenuItem empty = new MenuItem(I18n.tr("Sin resultados"));
+            empty.setDisable(true);
+            button.getItems().add(empty);
+        }
+    }
+
+    private CheckMenuItem createItem(MusicManager.FacetField field, String value, String text, boolean selected) {
+        CheckMenuItem item = new CheckMenuItem(text);
+        item.setSelected(selected);
+        item.setOnAction(evt -> toggle(field, value, item.isSelected()));
+        return item;
+    }
+
+    private void toggle(MusicManager.FacetField field, String value, boolean selected) {
+        Map<MusicManager.FacetField, Set<String>> selection = new EnumMap<>(MusicManager.FacetField.class);
+        selection.putAll(searchManager.getFacetSelection());
+        Set<String> values = new HashSet<>(selection.getOrDefault(field, Set.of()));
+        if (selected) {
+            values.add(value);
+        } else {
+            values.remove(value);
+        }
+        selection.put(field, values);
+        searchManager.setFacetSelection(selection);
+        refresh();
+    }
+
+    private static String fieldLabel(MusicManager.FacetField field) {
+        return switch (field) {
+            case ARTIST -> I18n.tr("Artista");
+            case MAPPER -> I18n.tr("Mapper");
+            case TAG -> I18n.tr("Tag");
+            case HAS -> I18n.tr("Contenido");
+        };
+    }
+
+    private static String valueLabel(MusicManager.FacetField field, String value, String label) {
+        if (field != MusicManager.FacetField.HAS) {
+            return label;
+        }
+        return switch (value) {
+            case "video" -> I18n.tr("Con video");
+            case "background" -> I18n.tr("Con fondo");
+            default -> label;
+        };
+    }
+}
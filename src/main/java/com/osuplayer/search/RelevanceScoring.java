@@ -0,0 +1,49 @@
+package com.osuplayer.search;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+public final class RelevanceScoring {
+
+    public static final int EXACT_MATCH_BONUS = 25;
+    public static final int PREFIX_MATCH_BONUS = 15;
+    public static final int ALL_TOKENS_BONUS = 25;
+    public static final int MISSING_TOKEN_PENALTY = 15;
+
+    private RelevanceScoring() {
+    }
+
+    public static int matchScore(String normalizedValue, String needle, int baseWeight) {
+        if (normalizedValue == null || normalizedValue.isBlank()) {
+            return 0;
+        }
+        if (normalizedValue.equals(needle)) {
+            return baseWeight + EXACT_MATCH_BONUS;
+        }
+        if (normalizedValue.startsWith(needle)) {
+            return baseWeight + PREFIX_MATCH_BONUS;
+        }
+        if (normalizedValue.contains(needle)) {
+            return baseWeight;
+        }
+        return 0;
+    }
+
+    public static int tokenScore(List<String> tokens, ToIntFunction<String> bestTokenScore) {
+        int score = 0;
+        int matchedTokens = 0;
+        for (String token : tokens) {
+            int tokenScore = bestTokenScore.applyAsInt(token);
+            if (tokenScore > 0) {
+                matchedTokens++;
+                score += tokenScore;
+            }
+        }
+        if (matchedTokens == tokens.size()) {
+            score += ALL_TOKENS_BONUS;
+        } else {
+            score -= (tokens.size() - matchedTokens) * MISSING_TOKEN_PENALTY;
+        }
+        return score;
+    }
+}
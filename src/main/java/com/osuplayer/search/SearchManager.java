@@ -1,112 +1,241 @@
 package com.osuplayer.search;
 
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import com.osuplayer.playback.MusicManager;
-import com.osuplayer.playback.MusicManager.SongMetadataDetails;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
+import javafx.util.Duration;
 
 public class SearchManager {
 
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(120);
+    private static final int RANKED_RESULT_LIMIT = 500;
+
     private final MusicManager musicManager;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "osu-library-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private volatile Task<?> activeSearchTask;
     private FilteredList<String> filteredSongList;
+    private SortedList<String> visibleSongList;
+    private Predicate<String> publishedPredicate;
+    private volatile boolean fuzzyMatching;
+    private volatile boolean rankedResults;
+    private Map<MusicManager.FacetField, Set<String>> facetSelection = Map.of();
+    private Runnable searchRefresher;
+    private Runnable resultsListener;
 
     public SearchManager(MusicManager musicManager) {
         this.musicManager = musicManager;
     }
 
-    public void setFilteredList(FilteredList<String> filteredSongList) {
+    public void setFilteredList(FilteredList<String> filteredSongList, SortedList<String> visibleSongList) {
         this.filteredSongList = filteredSongList;
+        this.visibleSongList = visibleSongList;
+        this.publishedPredicate = null;
+    }
+
+    public boolean isFuzzyMatching() {
+        return fuzzyMatching;
+    }
+
+    public void setFuzzyMatching(boolean enabled) {
+        if (fuzzyMatching == enabled) {
+            return;
+        }
+        fuzzyMatching = enabled;
+        if (searchRefresher != null) {
+            searchRefresher.run();
+        }
+    }
+
+    public boolean isRankedResults() {
+        return rankedResults;
+    }
+
+    public void setRankedResults(boolean enabled) {
+        if (rankedResults == enabled) {
+            return;
+        }
+        rankedResults = enabled;
+        if (searchRefresher != null) {
+            searchRefresher.run();
+        }
+    }
+
+    public Map<MusicManager.FacetField, Set<String>> getFacetSelection() {
+        return facetSelection;
+    }
+
+    public void setFacetSelection(Map<MusicManager.FacetField, Set<String>> selection) {
+        Map<MusicManager.FacetField, Set<String>> copy = new EnumMap<>(MusicManager.FacetField.class);
+        if (selection != null) {
+            selection.forEach((field, values) -> {
+                if (values != null && !values.isEmpty()) {
+                    copy.put(field, Set.copyOf(values));
+                }
+            });
+        }
+        if (copy.equals(facetSelection)) {
+            return;
+        }
+        facetSelection = Collections.unmodifiableMap(copy);
+        if (searchRefresher != null) {
+            searchRefresher.run();
+        }
+    }
+
+    public List<MusicManager.FacetValue> topFacetValues(MusicManager.FacetField field, int limit) {
+        return musicManager.topFacetValues(field, publishedPredicate, limit);
+    }
+
+    public void setOnResultsChanged(Runnable listener) {
+        this.resultsListener = listener;
     }
 
     public void setupSearchField(
             TextField searchField,
             ListView<String> songListView,
             Label currentSongLabel) {
-        
-        searchField.textProperty().addListener((obs, oldVal, newVal) -> {
+
+        PauseTransition debounce = new PauseTransition(SEARCH_DEBOUNCE);
+        debounce.setOnFinished(evt -> runSearch(searchField.getText(), songListView, currentSongLabel));
+        searchRefresher = () -> {
             if (filteredSongList == null) return;
 
-            String lower = newVal == null ? "" : newVal.toLowerCase().trim();
-            List<String> tokens = tokenize(lower);
+            if (isBlankSearch(searchField.getText())) {
+                debounce.stop();
+                showAllSongs(songListView, currentSongLabel);
+            } else {
+                debounce.playFromStart();
+            }
+        };
 
-            filteredSongList.setPredicate(song -> {
-                if (tokens.isEmpty()) return true;
-                return song != null && matchesQueryTokens(song, tokens);
-            });
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> {
+            if (filteredSongList == null) return;
 
-            String currentSong = currentSongLabel.getText();
-            if (currentSong != null && !currentSong.isEmpty()) {
-                int index = filteredSongList.indexOf(currentSong);
-                if (index >= 0) {
-                    songListView.getSelectionModel().select(index);
-                    songListView.scrollTo(index);
-                } else {
-                    songListView.getSelectionModel().clearSelection();
-                }
+            if (isBlankSearch(newVal)) {
+                debounce.stop();
+                showAllSongs(songListView, currentSongLabel);
+                return;
             }
+            debounce.playFromStart();
         });
     }
 
-    private List<String> tokenize(String query) {
-        if (query == null || query.isBlank()) return List.of();
-        return Arrays.stream(query.split("\\s+"))
-            .map(String::trim)
-            .filter(s -> !s.isEmpty())
-            .collect(Collectors.toList());
+    private boolean isBlankSearch(String query) {
+        return (query == null || query.isBlank()) && facetSelection.isEmpty();
     }
 
-    public boolean matchesQueryTokens(String songName, List<String> tokens) {
-        if (tokens == null || tokens.isEmpty()) return true;
-        if (songName == null) return false;
-
-        String lowerCaseSong = songName.toLowerCase();
-        SongMetadataDetails metadata = musicManager.getMetadata(songName);
-        List<String> creators = musicManager.getCreators(songName);
-        List<String> tags = musicManager.getTags(songName);
-
-        for (String token : tokens) {
-            if (token.isBlank()) continue;
-
-            boolean tokenMatched = lowerCaseSong.contains(token);
+    private void showAllSongs(ListView<String> songListView, Label currentSongLabel) {
+        searchGeneration.incrementAndGet();
+        cancelActiveSearch();
+        publish(SearchResult.ALL, songListView, currentSongLabel);
+    }
 
-            if (!tokenMatched && metadata != null) {
-                tokenMatched = (metadata.title != null && metadata.title.toLowerCase().contains(token))
-                    || (metadata.artist != null && metadata.artist.toLowerCase().contains(token))
-                    || (metadata.mapper != null && metadata.mapper.toLowerCase().contains(token))
-                    || (metadata.difficulty != null && metadata.difficulty.toLowerCase().contains(token))
-                    || (metadata.source != null && metadata.source.toLowerCase().contains(token));
+    private void runSearch(String query, ListView<String> songListView, Label currentSongLabel) {
+        if (filteredSongList == null) return;
+
+        int generation = searchGeneration.incrementAndGet();
+        cancelActiveSearch();
+        Predicate<String> previous = publishedPredicate;
+        boolean fuzzy = fuzzyMatching;
+        Map<MusicManager.FacetField, Set<String>> facets = facetSelection;
+        boolean ranked = rankedResults;
+
+        Task<SearchResult> task = new Task<>() {
+            @Override
+            protected SearchResult call() {
+                Predicate<String> matches = musicManager.searchPredicate(query, facets, previous, fuzzy);
+                if (!ranked) {
+                    return new SearchResult(matches, matches, null);
+                }
+                List<String> best = musicManager.rankSongs(matches, RANKED_RESULT_LIMIT);
+                Map<String, Integer> positions = new HashMap<>(best.size() * 2);
+                for (int i = 0; i < best.size(); i++) {
+                    positions.put(best.get(i), i);
+                }
+                return new SearchResult(matches, positions::containsKey, Comparator.comparing(positions::get));
             }
+        };
 
-            if (!tokenMatched && creators != null) {
-                tokenMatched = creators.stream()
-                    .filter(c -> c != null)
-                    .anyMatch(c -> c.toLowerCase().contains(token));
+        task.setOnSucceeded(evt -> {
+            if (generation != searchGeneration.get()) {
+                return;
             }
-
-            if (!tokenMatched && tags != null) {
-                tokenMatched = tags.stream()
-                    .filter(t -> t != null)
-                    .anyMatch(t -> t.toLowerCase().contains(token));
+            publish(task.getValue(), songListView, currentSongLabel);
+            clearActiveSearch(task);
+        });
+        task.setOnFailed(evt -> {
+            if (generation != searchGeneration.get()) {
+                return;
             }
+            Throwable ex = task.getException();
+            System.err.println("Error al buscar canciones: " + (ex == null ? "" : ex.getMessage()));
+            clearActiveSearch(task);
+        });
 
-            if (!tokenMatched && metadata != null && metadata.tags != null) {
-                tokenMatched = metadata.tags.stream()
-                    .filter(t -> t != null)
-                    .anyMatch(t -> t.toLowerCase().contains(token));
-            }
+        activeSearchTask = task;
+        searchExecutor.submit(task);
+    }
 
-            if (!tokenMatched) {
-                return false;
+    private void publish(SearchResult result, ListView<String> songListView, Label currentSongLabel) {
+        publishedPredicate = result.matches();
+        filteredSongList.setPredicate(result.visible());
+        if (visibleSongList != null) {
+            visibleSongList.setComparator(result.order());
+        }
+        if (resultsListener != null) {
+            resultsListener.run();
+        }
+
+        List<String> displayed = visibleSongList != null ? visibleSongList : filteredSongList;
+        String currentSong = currentSongLabel.getText();
+        if (currentSong != null && !currentSong.isEmpty()) {
+            int index = displayed.indexOf(currentSong);
+            if (index >= 0) {
+                songListView.getSelectionModel().select(index);
+                songListView.scrollTo(index);
+            } else {
+                songListView.getSelectionModel().clearSelection();
             }
         }
+    }
+
+    private void cancelActiveSearch() {
+        Task<?> current = activeSearchTask;
+        if (current != null && current.isRunning()) {
+            current.cancel(true);
+        }
+    }
+
+    private void clearActiveSearch(Task<?> task) {
+        if (activeSearchTask == task) {
+            activeSearchTask = null;
+        }
+    }
 
-        return true;
+    private record SearchResult(Predicate<String> matches, Predicate<String> visible, Comparator<String> order) {
+        static final SearchResult ALL = new SearchResult(null, null, null);
     }
-}
\ No newline at end of file
+}
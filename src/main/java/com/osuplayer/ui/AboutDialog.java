@@ -98,6 +98,9 @@ public final class AboutDialog {
 
         Label songsLabel = new Label(I18n.trf("Canciones cargadas: %s", musicManager.getLoadedSongCount()));
         Label diffLabel = new Label(I18n.trf("Dificultades detectadas: %s", musicManager.getLoadedDifficultyCount()));
+        MusicManager.StringPoolStats poolStats = musicManager.getStringPoolStats();
+        Label poolLabel = new Label(I18n.trf("Textos compartidos: %.1f%% de aciertos, ~%d KB ahorrados",
+            poolStats.hitRate() * 100, poolStats.bytesSaved() / 1024));
         String folderPath = musicManager.getLastFolderPath();
         Region folderValueNode;
         if (folderPath == null || folderPath.isBlank()) {
@@ -126,6 +129,7 @@ public final class AboutDialog {
             new Separator(),
             songsLabel,
             diffLabel,
+            poolLabel,
             folderRow,
             folderSizeLabel
         );
@@ -52,6 +52,9 @@ public class SettingsDialog {
     private final LanguageManager languageManager = LanguageManager.getInstance();
     private final Consumer<String> themeChangeListener;
     private Consumer<Boolean> historyRetentionChangeListener;
+    private Consumer<Boolean> libraryWatchChangeListener;
+    private Consumer<Boolean> fuzzySearchChangeListener;
+    private Consumer<Boolean> rankedSearchChangeListener;
     private final List<Image> iconImages = new ArrayList<>();
     private static Image fallbackIcon;
     private Stage stage;
@@ -62,6 +65,12 @@ public class SettingsDialog {
     private ComboBox<ThemeOption> themeCombo;
     private ObservableList<ThemeOption> themeComboItems;
     private CheckBox historyRetentionCheckBox;
+    private CheckBox libraryWatchCheckBox;
+    private CheckBox fuzzySearchCheckBox;
+    private CheckBox rankedSearchCheckBox;
+    private CheckBox progressiveLoadingCheckBox;
+    private CheckBox backgroundRevalidationCheckBox;
+    private CheckBox osuDatabaseImportCheckBox;
     private boolean updatingThemeSelection;
     private Runnable languageChangeListener;
 
@@ -82,6 +91,18 @@ public class SettingsDialog {
         this.historyRetentionChangeListener = listener;
     }
 
+    public void setOnLibraryWatchChanged(Consumer<Boolean> listener) {
+        this.libraryWatchChangeListener = listener;
+    }
+
+    public void setOnFuzzySearchChanged(Consumer<Boolean> listener) {
+        this.fuzzySearchChangeListener = listener;
+    }
+
+    public void setOnRankedSearchChanged(Consumer<Boolean> listener) {
+        this.rankedSearchChangeListener = listener;
+    }
+
     public void setOnLanguageChanged(Runnable listener) {
         this.languageChangeListener = listener;
     }
@@ -161,6 +182,93 @@ public class SettingsDialog {
         form.add(historyLabel, 0, 3);
         form.add(historyRetentionCheckBox, 1, 3);
 
+        Label libraryWatchLabel = new Label();
+        LanguageBindings.bindLabeled(libraryWatchLabel, "Detectar cambios en la carpeta Songs automáticamente");
+        libraryWatchCheckBox = new CheckBox();
+        libraryWatchCheckBox.setFocusTraversable(false);
+        libraryWatchCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == configManager.isLibraryWatchEnabled()) {
+                return;
+            }
+            configManager.setLibraryWatchEnabled(newVal);
+            if (libraryWatchChangeListener != null) {
+                libraryWatchChangeListener.accept(newVal);
+            }
+        });
+        form.add(libraryWatchLabel, 0, 4);
+        form.add(libraryWatchCheckBox, 1, 4);
+
+        Label fuzzySearchLabel = new Label();
+        LanguageBindings.bindLabeled(fuzzySearchLabel, "Tolerar errores de escritura al buscar");
+        fuzzySearchCheckBox = new CheckBox();
+        fuzzySearchCheckBox.setFocusTraversable(false);
+        fuzzySearchCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == configManager.isFuzzySearchEnabled()) {
+                return;
+            }
+            configManager.setFuzzySearchEnabled(newVal);
+            if (fuzzySearchChangeListener != null) {
+                fuzzySearchChangeListener.accept(newVal);
+            }
+        });
+        form.add(fuzzySearchLabel, 0, 5);
+        form.add(fuzzySearchCheckBox, 1, 5);
+
+        Label rankedSearchLabel = new Label();
+        LanguageBindings.bindLabeled(rankedSearchLabel, "Ordenar resultados de búsqueda por relevancia");
+        rankedSearchCheckBox = new CheckBox();
+        rankedSearchCheckBox.setFocusTraversable(false);
+        rankedSearchCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == configManager.isRankedSearchEnabled()) {
+                return;
+            }
+            configManager.setRankedSearchEnabled(newVal);
+            if (rankedSearchChangeListener != null) {
+                rankedSearchChangeListener.accept(newVal);
+            }
+        });
+        form.add(rankedSearchLabel, 0, 6);
+        form.add(rankedSearchCheckBox, 1, 6);
+
+        Label progressiveLoadingLabel = new Label();
+        LanguageBindings.bindLabeled(progressiveLoadingLabel, "Mostrar canciones mientras se escanea la biblioteca");
+        progressiveLoadingCheckBox = new CheckBox();
+        progressiveLoadingCheckBox.setFocusTraversable(false);
+        progressiveLoadingCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == configManager.isProgressiveLoadingEnabled()) {
+                return;
+            }
+            configManager.setProgressiveLoadingEnabled(newVal);
+        });
+        form.add(progressiveLoadingLabel, 0, 7);
+        form.add(progressiveLoadingCheckBox, 1, 7);
+
+        Label backgroundRevalidationLabel = new Label();
+        LanguageBindings.bindLabeled(backgroundRevalidationLabel, "Abrir la biblioteca guardada y comprobar cambios en segundo plano");
+        backgroundRevalidationCheckBox = new CheckBox();
+        backgroundRevalidationCheckBox.setFocusTraversable(false);
+        backgroundRevalidationCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == configManager.isBackgroundRevalidationEnabled()) {
+                return;
+            }
+            configManager.setBackgroundRevalidationEnabled(newVal);
+        });
+        form.add(backgroundRevalidationLabel, 0, 8);
+        form.add(backgroundRevalidationCheckBox, 1, 8);
+
+        Label osuDatabaseImportLabel = new Label();
+        LanguageBindings.bindLabeled(osuDatabaseImportLabel, "Importar la biblioteca desde osu!.db cuando esté disponible");
+        osuDatabaseImportCheckBox = new CheckBox();
+        osuDatabaseImportCheckBox.setFocusTraversable(false);
+        osuDatabaseImportCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == configManager.isOsuDatabaseImportEnabled()) {
+                return;
+            }
+            configManager.setOsuDatabaseImportEnabled(newVal);
+        });
+        form.add(osuDatabaseImportLabel, 0, 9);
+        form.add(osuDatabaseImportCheckBox, 1, 9);
+
         Region spacer = new Region();
         VBox.setVgrow(spacer, Priority.ALWAYS);
 
@@ -174,7 +282,7 @@ public class SettingsDialog {
         root.setPadding(new Insets(18));
 
         double preferredWidth = 560;
-        Scene scene = new Scene(root, preferredWidth, 320);
+        Scene scene = new Scene(root, preferredWidth, 530);
         dialog.setMinWidth(preferredWidth);
         dialog.setResizable(false); 
         dialog.setScene(scene);
@@ -257,6 +365,24 @@ public class SettingsDialog {
         if (historyRetentionCheckBox != null) {
             historyRetentionCheckBox.setSelected(configManager.isHistoryRetentionEnabled());
         }
+        if (libraryWatchCheckBox != null) {
+            libraryWatchCheckBox.setSelected(configManager.isLibraryWatchEnabled());
+        }
+        if (fuzzySearchCheckBox != null) {
+            fuzzySearchCheckBox.setSelected(configManager.isFuzzySearchEnabled());
+        }
+        if (rankedSearchCheckBox != null) {
+            rankedSearchCheckBox.setSelected(configManager.isRankedSearchEnabled());
+        }
+        if (progressiveLoadingCheckBox != null) {
+            progressiveLoadingCheckBox.setSelected(configManager.isProgressiveLoadingEnabled());
+        }
+        if (backgroundRevalidationCheckBox != null) {
+            backgroundRevalidationCheckBox.setSelected(configManager.isBackgroundRevalidationEnabled());
+        }
+        if (osuDatabaseImportCheckBox != null) {
+            osuDatabaseImportCheckBox.setSelected(configManager.isOsuDatabaseImportEnabled());
+        }
     }
 
     private void syncLanguageCombo() {
@@ -6,13 +6,21 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.osuplayer.beatmapbrowser.OsuBeatmapBrowserDialog;
 import com.osuplayer.beatmaps.BeatmapDeletionHelper;
+import com.osuplayer.beatmaps.CollectionDatabase;
+import com.osuplayer.beatmaps.SongsFolderWatcher;
 import com.osuplayer.config.ConfigManager;
 import com.osuplayer.discord.DiscordRichPresence;
 import com.osuplayer.exporting.ExportManager;
@@ -27,6 +35,7 @@ import com.osuplayer.playback.PlaylistManager;
 import com.osuplayer.playback.SongListCell;
 import com.osuplayer.playback.VideoSynchronizer;
 import com.osuplayer.playback.VideoVisibilityHelper;
+import com.osuplayer.search.FacetBar;
 import com.osuplayer.search.SearchManager;
 import com.osuplayer.shortcuts.GlobalMediaKeyService;
 import com.osuplayer.shortcuts.ShortcutAction;
@@ -39,6 +48,7 @@ import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.concurrent.Task;
 import javafx.event.EventTarget;
 import javafx.animation.PauseTransition;
@@ -61,6 +71,7 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import uk.co.caprica.vlcj.javafx.videosurface.ImageViewVideoSurface;
@@ -71,6 +82,7 @@ public class UIController {
 
     private final ListView<String> songListView = new ListView<>();
     private FilteredList<String> filteredSongList;
+    private SortedList<String> visibleSongList;
     private final ObservableList<String> masterSongList = FXCollections.observableArrayList();
     private final EmbeddedMediaPlayer audioPlayer;
     private final EmbeddedMediaPlayer videoPlayer;
@@ -101,13 +113,23 @@ public class UIController {
     private final ShortcutPreferencesDialog shortcutPreferencesDialog;
     private final SettingsDialog settingsDialog;
     private final UpdateService updateService;
+    private final SongsFolderWatcher songsFolderWatcher;
+    private final ExecutorService folderChangeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "osu-library-watch");
+        t.setDaemon(true);
+        return t;
+    });
     private Scene scene;
     private TextField searchField;
+    private FacetBar facetBar;
     private static final String NO_SONG_KEY = "Sin canción";
     private String noSongText = "";
     private String pendingLastSongSelection;
     private boolean lastSongSelectionApplied;
     private int selectionFreezeDepth;
+    private boolean libraryLoadInProgress;
+    private boolean partialWatchNotified;
+    private List<String> pendingStoredHistory;
 
     public UIController(EmbeddedMediaPlayer audioPlayer, EmbeddedMediaPlayer videoPlayer, ConfigManager configManager, MusicManager musicManager, DiscordRichPresence discord) {
         this.audioPlayer = audioPlayer;
@@ -125,8 +147,9 @@ public class UIController {
             () -> Platform.runLater(videoVisibilityHelper::showVideo),
             () -> Platform.runLater(videoVisibilityHelper::hideVideo)
         );
-        this.playlistManager = new PlaylistManager(configManager);
-        this.favoritesManager = new FavoritesManager(configManager, playlistManager);
+        this.playlistManager = new PlaylistManager(configManager, musicManager);
+        this.playlistManager.setLibrarySongs(musicManager::getLibrarySongs);
+        this.favoritesManager = new FavoritesManager(configManager, playlistManager, musicManager);
         this.searchManager = new SearchManager(musicManager);
         initializeNoSongLabel();
         this.songListView.setFixedCellSize(28);
@@ -145,7 +168,12 @@ public class UIController {
         this.settingsDialog = new SettingsDialog(configManager, this::applyTheme);
         this.settingsDialog.setOnHistoryRetentionChanged(this::handleHistoryRetentionPreferenceChanged);
         this.settingsDialog.setOnLanguageChanged(this::refreshOpenWindowsLanguage);
+        this.settingsDialog.setOnLibraryWatchChanged(enabled -> updateSongsFolderWatcher());
+        this.settingsDialog.setOnFuzzySearchChanged(searchManager::setFuzzyMatching);
+        this.settingsDialog.setOnRankedSearchChanged(searchManager::setRankedResults);
         this.updateService = new UpdateService();
+        this.songsFolderWatcher = new SongsFolderWatcher(changes -> Platform.runLater(() -> handleSongsFolderChanges(changes)));
+        this.songsFolderWatcher.setOnPartialWatch(() -> Platform.runLater(this::notifyPartialFolderWatch));
         
         this.exportManager = new ExportManager(musicManager);
         this.coverManager = new CoverManager(musicManager);
@@ -239,6 +267,7 @@ public class UIController {
             primaryStage,
             this::handleFolderSelection,
             () -> beatmapBrowserDialog.show(primaryStage),
+            this::importOsuCollections,
             () -> shortcutPreferencesDialog.show(primaryStage),
             () -> settingsDialog.show(primaryStage),
             this::handleUpdateCheck,
@@ -259,6 +288,9 @@ public class UIController {
     
         this.searchField = topBar.searchField();
         searchManager.setupSearchField(searchField, songListView, currentSongLabel);
+        searchManager.setFuzzyMatching(configManager.isFuzzySearchEnabled());
+        searchManager.setRankedResults(configManager.isRankedSearchEnabled());
+        this.facetBar = new FacetBar(searchManager);
         playbackManager.initializeControls(controlBar.progressSlider(), controlBar.timeLabel(), controlBar.volumeSlider(), controlBar.playPauseButton(), controlBar.shuffleButton(), controlBar.loopButton(), controlBar.previousButton(), controlBar.stopButton(), controlBar.nextButton());
     
         songListView.setCellFactory(lv -> new SongListCell(playlistManager, favoritesManager, exportManager, musicManager, this::refreshUIStatePreservingSelection, this::handleBeatmapDeletionFromLibrary));
@@ -284,7 +316,7 @@ public class UIController {
         setupGlobalShortcuts();
     
         VBox playlistBox = playlistHelper.initialize(this::selectPlaylist, scene.getStylesheets());
-        final VBox songListContainer = new VBox(songListView);
+        final VBox songListContainer = new VBox(facetBar.getNode(), songListView);
         VBox.setVgrow(songListView, Priority.ALWAYS);
     
         SplitPane splitPane = new SplitPane(playlistBox, songListContainer, mediaContainer);
@@ -431,6 +463,9 @@ public class UIController {
     private void refreshOpenWindowsLanguage() {
         updateNoSongPlaceholder(false);
         songListView.refresh();
+        if (facetBar != null) {
+            facetBar.refresh();
+        }
         beatmapBrowserDialog.refreshLanguage();
         shortcutPreferencesDialog.refreshLanguage();
         settingsDialog.refreshLanguage();
@@ -453,7 +488,60 @@ public class UIController {
     private void handleFolderSelection(File folder) {
         musicManager.setLastFolderPath(folder.getAbsolutePath());
         configManager.setLastFolder(folder.getAbsolutePath());
-        loadSongs(folder, this::selectInitialPlaylist);
+        loadSongs(folder, this::selectInitialPlaylist, configManager.isBackgroundRevalidationEnabled());
+    }
+
+    private void importOsuCollections() {
+        String lastFolder = configManager.getLastFolder();
+        File collectionFile = lastFolder == null ? null : CollectionDatabase.locate(new File(lastFolder));
+        if (collectionFile == null) {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle(I18n.tr("Selecciona el archivo collection.db de osu!"));
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("collection.db", "*.db"));
+            collectionFile = chooser.showOpenDialog(scene == null ? null : scene.getWindow());
+            if (collectionFile == null) {
+                return;
+            }
+        }
+
+        final File source = collectionFile;
+        Task<Map<String, List<String>>> importTask = new Task<>() {
+            @Override
+            protected Map<String, List<String>> call() throws Exception {
+                CollectionDatabase database = CollectionDatabase.read(source.toPath());
+                Map<String, String> songsByHash = musicManager.resolveBeatmapHashes(database.beatmapHashes());
+                Map<String, List<String>> imported = new LinkedHashMap<>();
+                for (CollectionDatabase.Collection collection : database.collections()) {
+                    List<String> songs = imported.computeIfAbsent(collection.name(), key -> new ArrayList<>());
+                    for (String hash : collection.beatmapHashes()) {
+                        String song = songsByHash.get(hash);
+                        if (song != null) {
+                            songs.add(song);
+                        }
+                    }
+                }
+                return imported;
+            }
+        };
+        importTask.setOnSucceeded(e -> {
+            int imported = playlistManager.importPlaylists(importTask.getValue());
+            playlistHelper.refreshPlaylistList();
+            String selected = playlistHelper.getSelectedPlaylist();
+            if (selected != null && importTask.getValue().containsKey(selected)) {
+                selectPlaylist(selected);
+            }
+            songListView.refresh();
+            showAlert(Alert.AlertType.INFORMATION, I18n.tr("Colecciones importadas"),
+                I18n.trf("Se importaron %d colecciones como playlists.", imported));
+        });
+        importTask.setOnFailed(e -> {
+            Throwable error = importTask.getException();
+            showAlert(Alert.AlertType.ERROR, I18n.tr("No se pudieron importar las colecciones"),
+                error == null ? I18n.tr("Causa desconocida") : error.getMessage());
+        });
+        Thread importThread = new Thread(importTask, "osu-collection-import");
+        importThread.setDaemon(true);
+        importThread.start();
     }
 
     private void selectInitialPlaylist() {
@@ -547,6 +635,9 @@ public class UIController {
             return;
         }
         if (!masterSongList.contains(pendingLastSongSelection)) {
+            if (libraryLoadInProgress) {
+                return;
+            }
             pendingLastSongSelection = null;
             lastSongSelectionApplied = true;
             return;
@@ -586,10 +677,11 @@ public class UIController {
         
         if (filteredSongList == null) {
             filteredSongList = new FilteredList<>(masterSongList, s -> true);
-            searchManager.setFilteredList(filteredSongList);
+            visibleSongList = new SortedList<>(filteredSongList);
+            searchManager.setFilteredList(filteredSongList, visibleSongList);
         }
         
-        songListView.setItems(filteredSongList);
+        songListView.setItems(visibleSongList);
         songListView.refresh();
         Platform.runLater(songListView::layout);
         scrollToCurrentSong();
@@ -620,15 +712,15 @@ public class UIController {
         if (playQueuedSongIfAvailable()) {
             return;
         }
-        if (filteredSongList == null || filteredSongList.isEmpty()) return;
+        if (visibleSongList == null || visibleSongList.isEmpty()) return;
 
         if (playbackManager.isShuffleEnabled()) {
-            int index = playbackManager.getRandomIndex(filteredSongList.size());
-            playSong(filteredSongList.get(index), false);
+            int index = playbackManager.getRandomIndex(visibleSongList.size());
+            playSong(visibleSongList.get(index), false);
         } else {
             int currentIndex = songListView.getSelectionModel().getSelectedIndex();
-            int nextIndex = (currentIndex + 1) % filteredSongList.size();
-            playSong(filteredSongList.get(nextIndex), false);
+            int nextIndex = (currentIndex + 1) % visibleSongList.size();
+            playSong(visibleSongList.get(nextIndex), false);
         }
     }
 
@@ -641,11 +733,11 @@ public class UIController {
     }
 
     public void playPreviousSong() {
-        if (filteredSongList == null || filteredSongList.isEmpty()) return;
+        if (visibleSongList == null || visibleSongList.isEmpty()) return;
 
         int currentIndex = songListView.getSelectionModel().getSelectedIndex();
-        int prevIndex = currentIndex > 0 ? currentIndex - 1 : filteredSongList.size() - 1;
-        playSong(filteredSongList.get(prevIndex), false);
+        int prevIndex = currentIndex > 0 ? currentIndex - 1 : visibleSongList.size() - 1;
+        playSong(visibleSongList.get(prevIndex), false);
     }
 
     public void playPreviousFromHistory() {
@@ -726,8 +818,8 @@ public class UIController {
                 return;
             }
             String currentSong = currentSongLabel.getText();
-            if (currentSong != null && filteredSongList != null && !filteredSongList.isEmpty()) {
-                int index = filteredSongList.indexOf(currentSong);
+            if (currentSong != null && visibleSongList != null && !visibleSongList.isEmpty()) {
+                int index = visibleSongList.indexOf(currentSong);
                 scrollToAndSelect(index);
             }
         });
@@ -749,10 +841,10 @@ public class UIController {
     public void highlightCurrentSong() {
         Platform.runLater(() -> {
             String currentSong = currentSongLabel.getText();
-            if (currentSong == null || filteredSongList == null) {
+            if (currentSong == null || visibleSongList == null) {
                 return;
             }
-            int index = filteredSongList.indexOf(currentSong);
+            int index = visibleSongList.indexOf(currentSong);
             if (index >= 0) {
                 songListView.getSelectionModel().select(index);
                 songListView.getFocusModel().focus(index);
@@ -762,20 +854,44 @@ public class UIController {
     }
 
     private void loadSongs(File folder, Runnable onSuccess) {
+        loadSongs(folder, onSuccess, false);
+    }
+
+    private void loadSongs(File folder, Runnable onSuccess, boolean preferCachedLibrary) {
         String loadingTitle = I18n.tr("Cargando canciones");
         ProgressDialog loadingDialog = new ProgressDialog(scene == null ? null : scene.getWindow(),
             loadingTitle,
             loadingTitle,
             configManager.getTheme());
+        MusicManager.LibraryBatchCallback batchCallback = null;
+        if (configManager.isProgressiveLoadingEnabled()) {
+            AtomicBoolean firstBatch = new AtomicBoolean(true);
+            batchCallback = addedSongs -> {
+                boolean first = firstBatch.getAndSet(false);
+                if (first) {
+                    loadingDialog.close();
+                }
+                Platform.runLater(() -> applyLoadedBatch(first));
+            };
+        }
+        MusicManager.LibraryBatchCallback progressiveCallback = batchCallback;
         Task<Map<String, String>> loadTask = new Task<>() {
             @Override
             protected Map<String, String> call() {
-                return musicManager.loadSongsFromFolder(folder, loadingDialog::updateProgress);
+                if (preferCachedLibrary) {
+                    Map<String, String> cached = musicManager.loadCachedLibrary(folder);
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+                return musicManager.loadSongsFromFolder(folder, loadingDialog::updateProgress, progressiveCallback);
             }
         };
 
+        libraryLoadInProgress = true;
         loadTask.setOnRunning(evt -> loadingDialog.show());
         loadTask.setOnSucceeded(evt -> {
+            libraryLoadInProgress = false;
             loadingDialog.updateProgress(1.0, I18n.tr("Completado"));
             loadingDialog.close();
             Map<String, String> loadedSongs = loadTask.getValue();
@@ -784,9 +900,15 @@ public class UIController {
                 if (onSuccess != null) {
                     onSuccess.run();
                 }
+                updateSongsFolderWatcher();
+                if (musicManager.needsRevalidation()) {
+                    revalidateLibraryInBackground();
+                }
+                resolveLibraryMediaInBackground();
             });
         });
         loadTask.setOnFailed(evt -> {
+            libraryLoadInProgress = false;
             loadingDialog.close();
             Throwable error = loadTask.getException();
             showAlert(Alert.AlertType.ERROR, I18n.tr("Error al cargar canciones"), error == null ? I18n.tr("Causa desconocida") : error.getMessage());
@@ -797,23 +919,77 @@ public class UIController {
         loader.start();
     }
 
+    private void resolveLibraryMediaInBackground() {
+        Task<Boolean> mediaTask = new Task<>() {
+            @Override
+            protected Boolean call() {
+                return musicManager.resolvePendingMedia();
+            }
+        };
+        mediaTask.setOnSucceeded(evt -> {
+            if (Boolean.TRUE.equals(mediaTask.getValue())) {
+                songListView.refresh();
+            }
+        });
+        mediaTask.setOnFailed(evt -> {
+            Throwable error = mediaTask.getException();
+            System.err.println("Error leyendo los recursos de la biblioteca: " + (error == null ? "" : error.getMessage()));
+        });
+
+        Thread resolver = new Thread(mediaTask, "osu-library-media");
+        resolver.setDaemon(true);
+        resolver.start();
+    }
+
+    private void revalidateLibraryInBackground() {
+        Task<MusicManager.LibraryDelta> revalidateTask = new Task<>() {
+            @Override
+            protected MusicManager.LibraryDelta call() {
+                return musicManager.revalidateCachedLibrary();
+            }
+        };
+        revalidateTask.setOnSucceeded(evt -> {
+            MusicManager.LibraryDelta delta = revalidateTask.getValue();
+            if (delta != null && !delta.isEmpty()) {
+                applyLibraryDelta(delta);
+            }
+        });
+        revalidateTask.setOnFailed(evt -> {
+            Throwable error = revalidateTask.getException();
+            System.err.println("Error revalidando la biblioteca: " + (error == null ? "" : error.getMessage()));
+        });
+
+        Thread revalidator = new Thread(revalidateTask, "osu-library-revalidate");
+        revalidator.setDaemon(true);
+        revalidator.start();
+    }
+
+    private void applyLoadedBatch(boolean firstBatch) {
+        String selectedPlaylist = playlistHelper.getSelectedPlaylist();
+        if (selectedPlaylist != null && !PlaylistManager.PLAYLIST_ALL.equals(selectedPlaylist)) {
+            return;
+        }
+        if (firstBatch) {
+            loadPlaylistSongs(PlaylistManager.PLAYLIST_ALL);
+            return;
+        }
+        List<String> librarySongs = playlistManager.getPlaylist(PlaylistManager.PLAYLIST_ALL);
+        int shown = masterSongList.size();
+        if (librarySongs.size() > shown) {
+            runWithSelectionPreserved(() -> masterSongList.addAll(librarySongs.subList(shown, librarySongs.size())));
+            attemptRestoreLastSongFromLibrary();
+        }
+    }
+
     private void applyLoadedSongs(Map<String, String> loadedSongs) {
         if (loadedSongs == null) {
             return;
         }
         Set<String> allSongs = loadedSongs.keySet();
 
-        playlistManager.setPlaylistSongs(PlaylistManager.PLAYLIST_ALL, new ArrayList<>(allSongs));
-
-        for (String playlistName : playlistManager.getAllPlaylists()) {
-            if (!playlistManager.isSpecialPlaylist(playlistName)) {
-                List<String> currentSongs = new ArrayList<>(playlistManager.getPlaylist(playlistName));
-                currentSongs.removeIf(song -> !allSongs.contains(song));
-                playlistManager.setPlaylistSongs(playlistName, currentSongs);
-            }
-        }
-
-        favoritesManager.validateFavorites(allSongs);
+        playlistManager.migrateLegacyEntries();
+        favoritesManager.migrateLegacyEntries();
+        restoreStoredHistory();
 
         List<String> currentHistory = new ArrayList<>(musicManager.getHistory());
         boolean removedFromHistory = currentHistory.removeIf(song -> !allSongs.contains(song));
@@ -823,14 +999,11 @@ public class UIController {
             musicManager.setHistory(currentHistory, adjustedIndex);
         }
         playlistManager.setPlaylistSongs(PlaylistManager.PLAYLIST_HISTORY, new ArrayList<>(musicManager.getHistory()));
-
-        playlistManager.pruneQueue(allSongs);
         refreshQueuePlaylistView();
 
         synchronizeUiHistoryFromMusicManager();
         persistHistoryIfEnabled();
 
-        playlistManager.savePlaylists();
         playlistHelper.refreshPlaylistList();
     }
 
@@ -864,23 +1037,95 @@ public class UIController {
         if (addedSongs.isEmpty()) {
             return;
         }
-        for (String song : addedSongs) {
-            playlistManager.addToPlaylist(PlaylistManager.PLAYLIST_ALL, song);
-        }
         playlistHelper.refreshPlaylistList();
         refreshUIState();
     }
 
+    private void updateSongsFolderWatcher() {
+        String lastFolder = configManager.getLastFolder();
+        if (!configManager.isLibraryWatchEnabled() || lastFolder == null || lastFolder.isBlank()) {
+            songsFolderWatcher.stop();
+            return;
+        }
+        try {
+            songsFolderWatcher.start(Path.of(lastFolder));
+        } catch (InvalidPathException ex) {
+            songsFolderWatcher.stop();
+        }
+    }
+
+    private void handleSongsFolderChanges(SongsFolderWatcher.FolderChanges changes) {
+        if (changes == null || libraryLoadInProgress || !isCurrentSongsFolder(changes.songsFolder())) {
+            return;
+        }
+        if (changes.requiresFullReload()) {
+            reloadCurrentFolder();
+            return;
+        }
+        Task<MusicManager.LibraryDelta> applyTask = new Task<>() {
+            @Override
+            protected MusicManager.LibraryDelta call() {
+                return musicManager.applyFolderChanges(changes.updatedFolders(), changes.removedFolders());
+            }
+        };
+        applyTask.setOnSucceeded(evt -> {
+            MusicManager.LibraryDelta delta = applyTask.getValue();
+            if (delta != null && !delta.isEmpty() && !libraryLoadInProgress) {
+                applyLibraryDelta(delta);
+            }
+        });
+        applyTask.setOnFailed(evt -> {
+            Throwable error = applyTask.getException();
+            System.err.println("Error aplicando cambios de la carpeta de canciones: " + (error == null ? "" : error.getMessage()));
+        });
+        // One worker keeps the deltas reaching the song list in the order the watcher reported them.
+        folderChangeExecutor.submit(applyTask);
+    }
+
+    private void notifyPartialFolderWatch() {
+        if (partialWatchNotified) {
+            return;
+        }
+        partialWatchNotified = true;
+        showAlert(Alert.AlertType.WARNING, I18n.tr("Vigilancia parcial de la carpeta de canciones"),
+            I18n.tr("El sistema no permite vigilar todas las carpetas de beatmaps. Los cambios en algunas se detectarán con unos segundos de retraso."));
+    }
+
+    private boolean isCurrentSongsFolder(Path songsFolder) {
+        String lastFolder = configManager.getLastFolder();
+        if (songsFolder == null || lastFolder == null || lastFolder.isBlank()) {
+            return false;
+        }
+        try {
+            return Path.of(lastFolder).toAbsolutePath().normalize().equals(songsFolder.toAbsolutePath().normalize());
+        } catch (InvalidPathException ex) {
+            return false;
+        }
+    }
+
+    private void applyLibraryDelta(MusicManager.LibraryDelta delta) {
+        runWithSelectionPreserved(() -> {
+            List<String> removedSongs = delta.removedSongs();
+            List<String> addedSongs = delta.addedSongs();
+            if (!removedSongs.isEmpty()) {
+                pruneUiHistory(removedSongs);
+                persistHistoryIfEnabled();
+                masterSongList.removeAll(new HashSet<>(removedSongs));
+            }
+            if (PlaylistManager.PLAYLIST_ALL.equals(playlistHelper.getSelectedPlaylist())) {
+                masterSongList.addAll(addedSongs);
+            }
+            updateFavoriteButton(currentSongLabel.getText());
+            songListView.refresh();
+        });
+    }
+
     private void applyRemovedSongs(List<String> removedSongs) {
         runWithSelectionPreserved(() -> {
             if (removedSongs == null || removedSongs.isEmpty()) {
                 refreshUIState();
                 return;
             }
-            for (String song : removedSongs) {
-                favoritesManager.removeFavorite(song);
-            }
-            playlistManager.removeSongsFromAllPlaylists(removedSongs);
             pruneUiHistory(removedSongs);
             playlistHelper.refreshPlaylistList();
             refreshQueuePlaylistView();
@@ -910,6 +1155,7 @@ public class UIController {
         if (enabled) {
             persistHistoryIfEnabled();
         } else {
+            pendingStoredHistory = null;
             configManager.clearStoredHistory();
         }
     }
@@ -920,15 +1166,46 @@ public class UIController {
             return;
         }
         List<String> storedHistory = configManager.getPlayHistory();
-        if (storedHistory == null || storedHistory.isEmpty()) {
+        if (storedHistory != null && !storedHistory.isEmpty()) {
+            pendingStoredHistory = new ArrayList<>(storedHistory);
+        }
+    }
+
+    private void restoreStoredHistory() {
+        if (pendingStoredHistory == null) {
             return;
         }
-        List<String> historySnapshot = new ArrayList<>(storedHistory);
         int storedIndex = configManager.getHistoryIndex();
+        Map<String, Integer> storedPlayCounts = new HashMap<>();
+        configManager.getPlayCounts().forEach((key, count) -> {
+            String song = musicManager.songNameOf(key);
+            if (song != null) {
+                storedPlayCounts.merge(song, count, Integer::sum);
+            }
+        });
+        List<String> historySnapshot = new ArrayList<>(pendingStoredHistory.size());
+        int resolvedIndex = -1;
+        for (int i = 0; i < pendingStoredHistory.size(); i++) {
+            String song = musicManager.songNameOf(pendingStoredHistory.get(i));
+            if (song != null) {
+                historySnapshot.add(song);
+                if (i <= storedIndex) {
+                    resolvedIndex = historySnapshot.size() - 1;
+                }
+            }
+        }
+        pendingStoredHistory = null;
+
+        List<String> playedWhileLoading = musicManager.getHistory();
+        historySnapshot.removeAll(new HashSet<>(playedWhileLoading));
+        historySnapshot.addAll(playedWhileLoading);
         int clampedIndex = historySnapshot.isEmpty()
             ? -1
-            : Math.min(Math.max(storedIndex, 0), historySnapshot.size() - 1);
+            : playedWhileLoading.isEmpty()
+                ? Math.min(Math.max(resolvedIndex, 0), historySnapshot.size() - 1)
+                : historySnapshot.size() - 1;
         musicManager.setHistory(historySnapshot, clampedIndex);
+        musicManager.mergePlayCounts(storedPlayCounts);
         playlistManager.setPlaylistSongs(PlaylistManager.PLAYLIST_HISTORY, new ArrayList<>(historySnapshot));
         synchronizeUiHistoryFromMusicManager();
     }
@@ -941,12 +1218,29 @@ public class UIController {
     }
 
     private void persistHistoryIfEnabled() {
-        if (!configManager.isHistoryRetentionEnabled()) {
+        if (!configManager.isHistoryRetentionEnabled() || pendingStoredHistory != null) {
             return;
         }
-        List<String> historySnapshot = new ArrayList<>(musicManager.getHistory());
-        configManager.setPlayHistory(historySnapshot);
-        configManager.setHistoryIndex(musicManager.getHistoryIndex());
+        List<String> history = musicManager.getHistory();
+        int index = musicManager.getHistoryIndex();
+        Map<String, Integer> counts = musicManager.getPlayCounts();
+        List<String> historyKeys = new ArrayList<>(history.size());
+        Map<String, Integer> playCounts = new LinkedHashMap<>();
+        int keyIndex = -1;
+        for (int i = 0; i < history.size(); i++) {
+            String key = musicManager.songKeyOf(history.get(i));
+            if (key != null) {
+                historyKeys.add(key);
+                playCounts.put(key, counts.getOrDefault(history.get(i), 1));
+                if (i <= index) {
+                    keyIndex = historyKeys.size() - 1;
+                }
+            }
+        }
+        configManager.setPlayHistory(historyKeys);
+        configManager.setPlayCounts(playCounts);
+        configManager.setRecentBeatmapSets(musicManager.getRecentBeatmapSets());
+        configManager.setHistoryIndex(keyIndex);
     }
 
     private void handleUpdateCheck() {
@@ -1058,6 +1352,7 @@ public class UIController {
 
     public void shutdown() {
         persistHistoryIfEnabled();
+        songsFolderWatcher.stop();
         globalMediaKeyService.close();
         beatmapBrowserDialog.shutdown();
     }
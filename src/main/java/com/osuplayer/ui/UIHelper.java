@@ -35,6 +35,7 @@ public final class UIHelper {
     public static TopBarComponents createTopBar(Stage ownerStage,
                                                 Consumer<File> onFolderChosen,
                                                 Runnable onDownloadRequested,
+                                                Runnable onCollectionImportRequested,
                                                 Runnable onShortcutPreferencesRequested,
                                                 Runnable onSettingsRequested,
                                                 Runnable onUpdateRequested,
@@ -63,6 +64,14 @@ public final class UIHelper {
             }
         });
 
+        MenuItem importCollectionsItem = new MenuItem();
+        LanguageBindings.bindMenuItem(importCollectionsItem, "Importar colecciones de osu!");
+        importCollectionsItem.setOnAction(e -> {
+            if (onCollectionImportRequested != null) {
+                onCollectionImportRequested.run();
+            }
+        });
+
         MenuItem shortcutsItem = new MenuItem();
         LanguageBindings.bindMenuItem(shortcutsItem, "Atajos de teclado");
         shortcutsItem.setOnAction(e -> {
@@ -102,6 +111,7 @@ public final class UIHelper {
         MenuItem[] orderedItems = {
             settingsItem,
             downloadBeatmapsItem,
+            importCollectionsItem,
             shortcutsItem,
             updateItem,
             changeFolderItem,